@@ -0,0 +1,38 @@
+package com.feyl.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 客户端从连接池中选择连接的方式
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@Getter
+public enum ChannelSelectEnum {
+
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN("roundRobin"),
+
+    /**
+     * 选择未完成请求最少的连接
+     */
+    LEAST_PENDING("leastPending");
+
+    private final String name;
+
+    /**
+     * 根据选择方式名获取枚举，名字未知时返回 null
+     */
+    public static ChannelSelectEnum fromName(String name) {
+        for (ChannelSelectEnum c : ChannelSelectEnum.values()) {
+            if (c.name.equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+}
@@ -10,7 +10,11 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    SNAPPY((byte) 0x03, "snappy"),
+    DEFLATE_DICT((byte) 0x04, "deflateDict");
 
     private final byte code;
     private final String name;
@@ -24,4 +28,16 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    /**
+     * 根据压缩方式名获取枚举，名字未知时返回 null
+     */
+    public static CompressTypeEnum fromName(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
 }
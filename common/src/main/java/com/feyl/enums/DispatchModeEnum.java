@@ -0,0 +1,48 @@
+package com.feyl.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 服务端执行 RPC请求的线程模型
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@Getter
+public enum DispatchModeEnum {
+
+    /**
+     * 直接在 IO 线程中执行，适用于不阻塞、耗时极短的方法
+     */
+    DIRECT("direct"),
+
+    /**
+     * 提交到所有服务共用的业务线程池，请求之间不保证顺序
+     */
+    SHARED("shared"),
+
+    /**
+     * 提交到服务独占的业务线程池，慢服务不会占满其他服务的线程
+     */
+    ISOLATED("isolated"),
+
+    /**
+     * 每个请求一个虚拟线程（需要 JDK 21+），适用于大量阻塞 IO 的方法；不支持时使用 shared
+     */
+    VIRTUAL("virtual");
+
+    private final String name;
+
+    /**
+     * 根据线程模型名获取枚举，名字未知时返回 null
+     */
+    public static DispatchModeEnum fromName(String name) {
+        for (DispatchModeEnum d : DispatchModeEnum.values()) {
+            if (d.name.equalsIgnoreCase(name)) {
+                return d;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.feyl.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 出站消息 flush 的合并模式
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@Getter
+public enum FlushModeEnum {
+
+    /**
+     * 每条消息立即 flush
+     */
+    OFF("off"),
+
+    /**
+     * 同一次 EventLoop 循环中写出的消息合并为一次 flush
+     */
+    TICK("tick"),
+
+    /**
+     * 第一次 flush 之后的时间窗口内写出的消息合并为一次 flush
+     */
+    WINDOW("window");
+
+    private final String name;
+
+    /**
+     * 根据模式名获取枚举，名字未知时返回 null
+     */
+    public static FlushModeEnum fromName(String name) {
+        for (FlushModeEnum f : FlushModeEnum.values()) {
+            if (f.name.equalsIgnoreCase(name)) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
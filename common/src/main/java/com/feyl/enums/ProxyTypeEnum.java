@@ -0,0 +1,38 @@
+package com.feyl.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 客户端代理的实现方式
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@Getter
+public enum ProxyTypeEnum {
+
+    /**
+     * JDK 动态代理
+     */
+    JDK("jdk"),
+
+    /**
+     * 运行时为每个服务接口生成的存根类
+     */
+    STUB("stub");
+
+    private final String name;
+
+    /**
+     * 根据代理方式名获取枚举，名字未知时返回 null
+     */
+    public static ProxyTypeEnum fromName(String name) {
+        for (ProxyTypeEnum p : ProxyTypeEnum.values()) {
+            if (p.name.equalsIgnoreCase(name)) {
+                return p;
+            }
+        }
+        return null;
+    }
+}
@@ -14,7 +14,144 @@ public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
 
-    ZOOKEEPER_ADDRESS("rpc.zookeeper.address");
+    ZOOKEEPER_ADDRESS("rpc.zookeeper.address"),
+
+    /**
+     * 服务端绑定的地址，默认为本机地址；绑定 0.0.0.0 时以本机地址注册到注册中心
+     */
+    SERVER_HOST("rpc.server.host"),
+
+    /**
+     * 服务端绑定的端口，默认 9998；为 0 时由系统分配，并以实际端口注册到注册中心
+     */
+    SERVER_PORT("rpc.server.port"),
+
+    /**
+     * 服务端监听 channel 的数量，大于 1 时通过 SO_REUSEPORT 绑定同一端口（仅 epoll 传输支持）
+     */
+    SERVER_ACCEPTORS("rpc.server.acceptors"),
+
+    /**
+     * 客户端到每个服务地址的最大连接数，默认 1
+     */
+    CLIENT_CONNECTIONS("rpc.client.connections"),
+
+    /**
+     * 客户端从连接池中选择连接的方式，取值为 {@link ChannelSelectEnum} 的 name
+     */
+    CLIENT_CHANNEL_SELECT("rpc.client.channel.select"),
+
+    /**
+     * 客户端连接空闲多少秒后关闭，默认 60，为 0 时不关闭
+     */
+    CLIENT_IDLE_TIMEOUT("rpc.client.idle.timeout"),
+
+    /**
+     * 连接失败后第一次重连的等待时间（毫秒），之后每次失败翻倍
+     */
+    CLIENT_RECONNECT_BACKOFF("rpc.client.reconnect.backoff"),
+
+    /**
+     * 客户端代理的实现方式，取值为 {@link ProxyTypeEnum} 的 name，默认 jdk
+     */
+    CLIENT_PROXY("rpc.client.proxy"),
+
+    /**
+     * 连接建立后是否与服务端握手协商方法ID，默认 true
+     */
+    CLIENT_HANDSHAKE("rpc.client.handshake"),
+
+    /**
+     * 客户端合并请求的时间窗口（微秒），窗口内发往同一连接的请求合并为一个 BATCH 帧，默认 0 不合并
+     */
+    CLIENT_BATCH_WINDOW_MICROS("rpc.client.batch.window.micros"),
+
+    /**
+     * 一个 BATCH 帧最多合并的请求数，默认 64
+     */
+    CLIENT_BATCH_MAX_SIZE("rpc.client.batch.max.size"),
+
+    /**
+     * 流式调用接收方向的流控窗口：对端最多发出多少个本端尚未消费的消息，默认 64；
+     * 窗口随请求（服务端随第一个 STREAM_CREDIT 帧）告知对端，作为对端发送方向的初始额度
+     */
+    STREAM_WINDOW("rpc.stream.window"),
+
+    /**
+     * 远程调用的默认超时时间（毫秒），默认 10000，为 0 时不超时
+     */
+    CLIENT_TIMEOUT("rpc.client.timeout"),
+
+    /**
+     * 重连等待时间的上限（毫秒）
+     */
+    CLIENT_RECONNECT_MAX_BACKOFF("rpc.client.reconnect.max.backoff"),
+
+    /**
+     * 优先使用的压缩方式，取值为 {@link CompressTypeEnum} 的 name
+     */
+    COMPRESS_TYPE("rpc.compress.type"),
+
+    /**
+     * 消息体小于该字节数时不压缩
+     */
+    COMPRESS_THRESHOLD("rpc.compress.threshold"),
+
+    /**
+     * 服务默认的线程模型，取值为 {@link DispatchModeEnum} 的 name，默认 shared
+     */
+    SERVER_DISPATCH("rpc.server.dispatch"),
+
+    /**
+     * 共用业务线程池的线程数，默认为 CPU 核数的 2 倍
+     */
+    SERVER_THREADS("rpc.server.threads"),
+
+    /**
+     * 每个业务线程池的等待队列容量，队列满时请求直接失败；virtual 线程模型下没有配置时默认等于并发上限
+     */
+    SERVER_QUEUE_CAPACITY("rpc.server.queue.capacity"),
+
+    /**
+     * virtual 线程模型下同时执行的最大请求数，默认 10000
+     */
+    SERVER_VIRTUAL_CONCURRENCY("rpc.server.virtual.concurrency"),
+
+    /**
+     * 失败响应是否携带服务端异常堆栈，默认 false
+     */
+    SERVER_ERROR_STACK_TRACE("rpc.server.error.stacktrace"),
+
+    /**
+     * 服务端在双向流式调用中向客户端发送消息时等待额度的超时时间（毫秒），默认 10000；
+     * 客户端长时间不归还额度时发送失败，不会一直占用业务线程
+     */
+    SERVER_STREAM_TIMEOUT("rpc.server.stream.timeout"),
+
+    /**
+     * 合并 flush 的模式，取值为 {@link FlushModeEnum} 的 name，默认不合并
+     */
+    FLUSH_MODE("rpc.flush.mode"),
+
+    /**
+     * window 模式下合并 flush 的时间窗口（微秒）
+     */
+    FLUSH_WINDOW_MICROS("rpc.flush.window.micros"),
+
+    /**
+     * 是否优先使用 Netty 的 epoll 原生传输，默认 true，不可用时自动回退到 NIO
+     */
+    TRANSPORT_NATIVE("rpc.transport.native"),
+
+    /**
+     * socket 发送缓冲区大小（SO_SNDBUF），不配置时使用系统默认值
+     */
+    SOCKET_SEND_BUFFER("rpc.socket.sndbuf"),
+
+    /**
+     * socket 接收缓冲区大小（SO_RCVBUF），不配置时使用系统默认值
+     */
+    SOCKET_RECEIVE_BUFFER("rpc.socket.rcvbuf");
 
     private final String propertyValue;
 
@@ -15,6 +15,8 @@ public enum RpcErrorMessageEnum {
 
     SERVICE_INVOCATION_FAILURE("服务调用失败"),
 
+    REQUEST_TIMEOUT("服务调用超时"),
+
     SERVICE_CAN_NOT_BE_FOUND("没有找到指定的远程服务"),
 
     SERVICE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务没有实现任何接口"),
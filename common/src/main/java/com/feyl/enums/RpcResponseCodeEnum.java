@@ -15,7 +15,11 @@ import lombok.ToString;
 public enum RpcResponseCodeEnum {
     SUCCESS(200, "远程调用成功"),
 
-    FAIL(500, "远程调用失败");
+    FAIL(500, "远程调用失败"),
+
+    NOT_FOUND(404, "没有找到指定的远程服务"),
+
+    BUSY(503, "服务端繁忙，请求被拒绝");
 
     private final int code;
 
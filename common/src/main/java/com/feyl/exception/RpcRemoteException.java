@@ -0,0 +1,53 @@
+package com.feyl.exception;
+
+/**
+ * 服务端返回的调用失败：服务不存在、服务端繁忙或服务方法抛出了异常
+ *
+ * @author Feyl
+ */
+public class RpcRemoteException extends RpcException {
+
+    /**
+     * 响应状态码，取值为 {@link com.feyl.enums.RpcResponseCodeEnum} 的 code
+     */
+    private final int code;
+
+    /**
+     * 服务端抛出的异常类名
+     */
+    private final String exceptionClass;
+
+    /**
+     * 服务端异常信息
+     */
+    private final String remoteMessage;
+
+    /**
+     * 服务端异常堆栈，服务端未开启时为 null
+     */
+    private final String remoteStackTrace;
+
+    public RpcRemoteException(int code, String exceptionClass, String remoteMessage, String remoteStackTrace) {
+        super(exceptionClass + ": " + remoteMessage, null);
+        this.code = code;
+        this.exceptionClass = exceptionClass;
+        this.remoteMessage = remoteMessage;
+        this.remoteStackTrace = remoteStackTrace;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    public String getRemoteMessage() {
+        return remoteMessage;
+    }
+
+    public String getRemoteStackTrace() {
+        return remoteStackTrace;
+    }
+}
@@ -0,0 +1,76 @@
+package com.feyl.utils;
+
+import com.feyl.enums.RpcConfigEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Properties;
+
+/**
+ * rpc 配置读取工具类
+ * 首次使用时读取一次类路径下的 rpc.properties 并缓存，同名的 JVM 系统属性（-Dkey=value）优先级更高。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public final class RpcConfigUtil {
+
+    private static volatile Properties properties;
+
+    private RpcConfigUtil() {
+    }
+
+    public static String getString(RpcConfigEnum rpcConfigEnum, String defaultValue) {
+        String key = rpcConfigEnum.getPropertyValue();
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = getProperties().getProperty(key);
+        }
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(RpcConfigEnum rpcConfigEnum, int defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.warn("Illegal value [{}] of config [{}], use default [{}]", value, rpcConfigEnum.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(RpcConfigEnum rpcConfigEnum, long defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Illegal value [{}] of config [{}], use default [{}]", value, rpcConfigEnum.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(RpcConfigEnum rpcConfigEnum, boolean defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * 获取缓存的 rpc.properties，配置文件不存在时使用空配置（即全部取默认值）
+     */
+    private static Properties getProperties() {
+        Properties props = properties;
+        if (props == null) {
+            synchronized (RpcConfigUtil.class) {
+                props = properties;
+                if (props == null) {
+                    try {
+                        props = PropertiesFileUtil.read(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+                    } catch (RuntimeException e) {
+                        log.warn("Config file [{}] not found, use default config", RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+                    }
+                    properties = props = props == null ? new Properties() : props;
+                }
+            }
+        }
+        return props;
+    }
+}
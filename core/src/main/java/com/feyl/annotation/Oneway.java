@@ -0,0 +1,18 @@
+package com.feyl.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 单向调用注解，标注在服务接口的方法上：请求写出后立即返回，服务端执行方法但不返回响应
+ *
+ * 适用于审计、指标上报等不关心结果的调用，方法返回值必须为 void 或 CompletableFuture&lt;Void&gt;，
+ * 返回 CompletableFuture 时在请求写出（或写出失败）后完成，可以用来跟踪写出结果。
+ * 服务方法抛出的异常只记录在服务端日志中，调用方无法感知。
+ *
+ * @author Feyl
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Oneway {
+}
@@ -0,0 +1,28 @@
+package com.feyl.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * RPC异步接口注解，标注在同步服务接口对应的异步接口上
+ * 异步接口中的方法与同步接口同名、参数相同，返回值为 CompletableFuture 包装的同步接口返回值，例如：
+ * <pre>
+ * &#64;RpcAsync(HelloService.class)
+ * public interface HelloServiceAsync {
+ *     CompletableFuture&lt;String&gt; hello(Hello hello);
+ * }
+ * </pre>
+ * 客户端通过异步接口发起调用时，请求按同步接口的服务名发送，服务端无需任何修改。
+ *
+ * @author Feyl
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Inherited
+public @interface RpcAsync {
+
+    /**
+     * 对应的同步服务接口
+     */
+    Class<?> value();
+}
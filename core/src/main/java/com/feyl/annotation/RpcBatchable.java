@@ -0,0 +1,42 @@
+package com.feyl.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在服务实现类的单个查询方法上，把并发的单个查询合并为一次批量查询，例如：
+ * <pre>
+ * &#64;RpcBatchable("getUsers")
+ * public User getUser(Long id) { ... }
+ *
+ * public List&lt;User&gt; getUsers(List&lt;Long&gt; ids) { ... }
+ * </pre>
+ * 服务端在时间窗口内收集该方法的请求（最多 {@link #maxBatchSize()} 个），以所有请求的参数调用一次批量方法，
+ * 再把结果分发给每个请求，客户端无需任何修改。
+ *
+ * 单个方法只能有一个参数；批量方法只有一个 List（或 Collection）参数，返回值为：
+ *  - List：与参数按下标一一对应；
+ *  - Map：以参数为 key 查找每个请求的结果；
+ *  - 或者是包装上述结果的 CompletableFuture（CompletionStage）。
+ *
+ * @author Feyl
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface RpcBatchable {
+
+    /**
+     * 同一服务对象上批量方法的方法名
+     */
+    String value();
+
+    /**
+     * 第一个请求到达后等待合并的时间（微秒）
+     */
+    long windowMicros() default 1000;
+
+    /**
+     * 一次批量调用最多合并的请求数，达到后立即调用
+     */
+    int maxBatchSize() default 64;
+}
@@ -0,0 +1,24 @@
+package com.feyl.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 单个方法的调用超时时间，在 {@link RpcReference#methodTimeouts()} 中使用
+ *
+ * @author Feyl
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface RpcMethodTimeout {
+
+    /**
+     * 方法名
+     */
+    String method();
+
+    /**
+     * 超时时间（毫秒）
+     */
+    long timeout();
+}
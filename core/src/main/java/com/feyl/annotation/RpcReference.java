@@ -23,4 +23,19 @@ public @interface RpcReference {
      * 远程调用服务版本号，默认为空串
      */
     String version() default "";
+
+    /**
+     * 调用超时时间（毫秒），默认为 0，表示使用 rpc.client.timeout 配置的超时时间
+     */
+    long timeout() default 0;
+
+    /**
+     * 单个方法的调用超时时间，优先于 {@link #timeout()}
+     */
+    RpcMethodTimeout[] methodTimeouts() default {};
+
+    /**
+     * 是否以单向调用发送所有返回 void 的方法，默认 false，见 {@link Oneway}
+     */
+    boolean oneway() default false;
 }
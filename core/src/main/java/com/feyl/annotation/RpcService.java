@@ -24,4 +24,14 @@ public @interface RpcService {
      */
     String version() default "";
 
+    /**
+     * 服务的线程模型，取值为 {@link com.feyl.enums.DispatchModeEnum} 的 name，默认使用 rpc.server.dispatch 的配置
+     */
+    String dispatch() default "";
+
+    /**
+     * isolated 线程模型下服务独占线程池的线程数，为 0 时与共用线程池相同
+     */
+    int threads() default 0;
+
 }
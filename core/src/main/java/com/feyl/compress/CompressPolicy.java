@@ -0,0 +1,107 @@
+package com.feyl.compress;
+
+import com.feyl.enums.CompressTypeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.utils.RpcConfigUtil;
+
+/**
+ * 逐帧决定是否压缩消息体的自适应压缩策略
+ *
+ *  - 消息体小于阈值（rpc.compress.threshold）时不压缩：小消息压缩后往往更大，还白白消耗 CPU；
+ *    字典压缩对小消息同样有效，阈值不超过 {@link #DICTIONARY_THRESHOLD}；
+ *  - 每种压缩方式维护一个压缩率（压缩后长度 / 原始长度）的滑动估计，估计值说明压缩收益很低时跳过压缩，
+ *    但每隔 {@link #SAMPLE_INTERVAL} 帧仍会压缩一次作为采样，以便负载特征变化后能重新开启压缩。
+ *
+ * 每个编码器（即每个 channel）持有一个实例，只在该 channel 的 EventLoop 中访问，因此无需同步。
+ *
+ * @author Feyl
+ */
+public class CompressPolicy {
+
+    private static final int DEFAULT_THRESHOLD = 512;
+
+    /**
+     * 字典压缩对小消息同样有效，使用更小的阈值
+     */
+    private static final int DICTIONARY_THRESHOLD = 64;
+
+    /**
+     * 压缩率估计高于该值时认为压缩不划算
+     */
+    private static final double MAX_USEFUL_RATIO = 0.9;
+
+    /**
+     * 压缩不划算时，每隔多少帧采样压缩一次
+     */
+    private static final int SAMPLE_INTERVAL = 32;
+
+    /**
+     * 新样本在压缩率估计中的权重
+     */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    private static final int THRESHOLD = RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_THRESHOLD, DEFAULT_THRESHOLD);
+
+    private static final CompressTypeEnum COMPRESS_TYPE = resolveCompressType();
+
+    /**
+     * 下标为压缩方式编码，值为该压缩方式的压缩率估计，0 表示还没有样本
+     */
+    private final double[] ratios = new double[256];
+
+    /**
+     * 下标为压缩方式编码，值为因压缩率过高而连续跳过压缩的帧数
+     */
+    private final int[] skipped = new int[256];
+
+    /**
+     * 获取配置的压缩方式（rpc.compress.type），默认为 gzip
+     */
+    public static byte configuredCompressType() {
+        return COMPRESS_TYPE.getCode();
+    }
+
+    /**
+     * 判断当前帧是否需要压缩
+     *
+     * @param compressType 消息期望使用的压缩方式
+     * @param rawLength    未压缩的消息体长度
+     * @return 是否压缩
+     */
+    public boolean shouldCompress(byte compressType, int rawLength) {
+        int threshold = compressType == CompressTypeEnum.DEFLATE_DICT.getCode()
+                ? Math.min(THRESHOLD, DICTIONARY_THRESHOLD) : THRESHOLD;
+        if (compressType == CompressTypeEnum.NONE.getCode() || rawLength < threshold) {
+            return false;
+        }
+        int index = compressType & 0xFF;
+        double ratio = ratios[index];
+        if (ratio <= MAX_USEFUL_RATIO) {
+            return true;
+        }
+        if (++skipped[index] >= SAMPLE_INTERVAL) {
+            skipped[index] = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次压缩的结果，更新压缩率估计
+     */
+    public void record(byte compressType, int rawLength, int compressedLength) {
+        int index = compressType & 0xFF;
+        double sample = (double) compressedLength / rawLength;
+        double ratio = ratios[index];
+        ratios[index] = ratio == 0 ? sample : ratio * (1 - SAMPLE_WEIGHT) + sample * SAMPLE_WEIGHT;
+    }
+
+    private static CompressTypeEnum resolveCompressType() {
+        String name = RpcConfigUtil.getString(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName());
+        CompressTypeEnum compressType = CompressTypeEnum.fromName(name);
+        if (compressType == null) {
+            throw new IllegalArgumentException("Unknown compress type: " + name);
+        }
+        return compressType;
+    }
+}
@@ -1,7 +1,14 @@
 package com.feyl.compress;
 
+import cn.hutool.core.io.IoUtil;
 import com.feyl.extension.SPI;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * 字节序列压缩器接口
  *
@@ -13,4 +20,33 @@ public interface Compressor {
     byte[] compress(byte[] bytes);
 
     byte[] decompress(byte[] bytes);
+
+    /**
+     * 包装目标输出流：写入返回流的数据会被压缩后写入 out，关闭返回的流时完成压缩（不会关闭 out）。
+     * 默认实现先在内存中缓冲，关闭时调用 {@link #compress(byte[])} 一次性写出，
+     * 支持流式压缩的实现类应覆盖该方法，直接压缩进目标流。
+     *
+     * @param out 压缩数据的目标输出流
+     * @return 接收原始数据的输出流
+     */
+    default OutputStream compress(OutputStream out) {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                out.write(Compressor.this.compress(toByteArray()));
+            }
+        };
+    }
+
+    /**
+     * 包装压缩数据的输入流：从返回的流中读到的是解压后的数据。
+     * 默认实现先读出全部字节再调用 {@link #decompress(byte[])}，
+     * 支持流式解压的实现类应覆盖该方法，边读边解压。
+     *
+     * @param in 压缩数据的输入流
+     * @return 解压后数据的输入流
+     */
+    default InputStream decompress(InputStream in) {
+        return new ByteArrayInputStream(decompress(IoUtil.readBytes(in, false)));
+    }
 }
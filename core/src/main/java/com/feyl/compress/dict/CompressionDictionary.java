@@ -0,0 +1,24 @@
+package com.feyl.compress.dict;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 压缩字典
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@Getter
+public class CompressionDictionary {
+
+    /**
+     * 字典 id，在同一个 channel 的同一方向上唯一，随压缩后的消息体一起传输；0 表示不使用字典
+     */
+    private final int id;
+
+    /**
+     * 字典内容
+     */
+    private final byte[] bytes;
+}
@@ -0,0 +1,142 @@
+package com.feyl.compress.dict;
+
+import cn.hutool.core.io.IoUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 基于 deflate 预置字典（preset dictionary）的压缩
+ *
+ * 小消息内容太少，通用压缩算法找不到可以引用的重复内容；而同一服务的请求反复出现相同的接口名、方法名、参数类型等字符串。
+ * 预置字典相当于把这些字符串提前放进滑动窗口，即使是几百字节的消息，也可以直接引用字典中的内容。
+ *
+ * 压缩结果格式：4B 字典 id（大端序） + 原始 deflate 数据
+ *
+ * @author Feyl
+ */
+public class DeflateDictionaryCompressor implements DictionaryCompressor {
+
+    private static final int BUFFER_SIZE = 1024 * 4; //4K
+
+    /**
+     * 每个线程复用一个 Deflater，小消息使用最快的压缩级别即可获得字典带来的大部分收益
+     */
+    private final ThreadLocal<Deflater> deflaterThreadLocal = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+
+    /**
+     * 每个线程复用一个 Inflater
+     */
+    private final ThreadLocal<Inflater> inflaterThreadLocal = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 2 + 4);
+        try (OutputStream dos = compress(baos)) {
+            dos.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Deflate compress error", e);
+        }
+        return baos.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try (InputStream dis = decompress(new ByteArrayInputStream(bytes))) {
+            return IoUtil.readBytes(dis, false);
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Deflate decompress error", e);
+        }
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        return compress(out, null);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        return decompress(in, id -> null);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, CompressionDictionary dictionary) {
+        Deflater deflater = deflaterThreadLocal.get();
+        try {
+            int id = dictionary == null ? NO_DICTIONARY : dictionary.getId();
+            out.write(id >>> 24);
+            out.write(id >>> 16);
+            out.write(id >>> 8);
+            out.write(id);
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary.getBytes());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Deflate compress error", e);
+        }
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            /**
+             * 完成压缩并 reset Deflater，不关闭目标流
+             */
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        finish();
+                        out.flush();
+                    } finally {
+                        def.reset();
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in, IntFunction<byte[]> dictionaries) {
+        Inflater inflater = inflaterThreadLocal.get();
+        try {
+            int id = new DataInputStream(in).readInt();
+            if (id != NO_DICTIONARY) {
+                byte[] dictionary = dictionaries.apply(id);
+                if (dictionary == null) {
+                    throw new IllegalStateException("Unknown compression dictionary: " + id);
+                }
+                // 原始 deflate 数据不会触发 needsDictionary，需要在解压前主动设置字典
+                inflater.setDictionary(dictionary);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Deflate decompress error", e);
+        }
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    inf.reset();
+                    in.close();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.feyl.compress.dict;
+
+import com.feyl.compress.Compressor;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.IntFunction;
+
+/**
+ * 支持预置字典的压缩器
+ * 压缩后的消息体以 4B 字典 id 开头，解压时根据 id 找到对端事先通过 DICTIONARY 帧发来的字典。
+ * 不带字典参数的 {@link Compressor} 方法等价于使用 id 为 0 的空字典。
+ *
+ * @author Feyl
+ */
+public interface DictionaryCompressor extends Compressor {
+
+    /**
+     * 不使用字典时写入的字典 id
+     */
+    int NO_DICTIONARY = 0;
+
+    /**
+     * 使用字典压缩
+     *
+     * @param out        压缩数据的目标输出流
+     * @param dictionary 压缩字典，为 null 时不使用字典
+     * @return 接收原始数据的输出流，关闭时完成压缩（不会关闭 out）
+     */
+    OutputStream compress(OutputStream out, CompressionDictionary dictionary);
+
+    /**
+     * 使用字典解压
+     *
+     * @param in           压缩数据的输入流
+     * @param dictionaries 根据字典 id 查找字典内容
+     * @return 解压后数据的输入流
+     */
+    InputStream decompress(InputStream in, IntFunction<byte[]> dictionaries);
+}
@@ -0,0 +1,105 @@
+package com.feyl.compress.dict;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 根据采样的消息体训练压缩字典
+ *
+ * 训练过程：
+ *  1. 以每个位置开始的 {@link #SHINGLE_LENGTH} 字节作为片段，统计每个片段出现在多少个样本中；
+ *  2. 出现在至少一半样本中的片段视为公共片段，把每个样本中被公共片段覆盖的连续字节提取出来作为候选内容；
+ *  3. 候选内容按“出现的样本数 × 长度”打分，从高到低选取直到达到字典大小上限。
+ *
+ * deflate 引用越近的内容编码越短，所以得分最高的内容放在字典末尾（最靠近待压缩数据的位置）。
+ *
+ * @author Feyl
+ */
+public final class DictionaryTrainer {
+
+    private static final int SHINGLE_LENGTH = 8;
+
+    private DictionaryTrainer() {
+    }
+
+    /**
+     * 训练字典
+     *
+     * @param samples 采样的消息体
+     * @param maxSize 字典最大字节数
+     * @return 字典内容，样本中没有公共内容时返回空数组
+     */
+    public static byte[] train(List<byte[]> samples, int maxSize) {
+        // 片段 -> 包含该片段的样本数
+        Map<Long, Integer> shingleCounts = new HashMap<>();
+        for (byte[] sample : samples) {
+            Set<Long> shingles = new HashSet<>();
+            for (int i = 0; i + SHINGLE_LENGTH <= sample.length; i++) {
+                shingles.add(shingle(sample, i));
+            }
+            for (Long shingle : shingles) {
+                shingleCounts.merge(shingle, 1, Integer::sum);
+            }
+        }
+        int minCount = Math.max(2, (samples.size() + 1) / 2);
+        // 候选内容 -> 出现的样本数
+        Map<ByteBuffer, Integer> segments = new LinkedHashMap<>();
+        for (byte[] sample : samples) {
+            int start = -1;
+            int end = -1;
+            int count = Integer.MAX_VALUE;
+            for (int i = 0; i + SHINGLE_LENGTH <= sample.length; i++) {
+                int c = shingleCounts.getOrDefault(shingle(sample, i), 0);
+                if (c >= minCount) {
+                    if (start < 0 || i > end) {
+                        addSegment(segments, sample, start, end, count);
+                        start = i;
+                        count = c;
+                    }
+                    end = i + SHINGLE_LENGTH;
+                    count = Math.min(count, c);
+                }
+            }
+            addSegment(segments, sample, start, end, count);
+        }
+        List<Map.Entry<ByteBuffer, Integer>> candidates = new ArrayList<>(segments.entrySet());
+        candidates.sort((a, b) -> Long.compare(
+                (long) b.getValue() * b.getKey().remaining(), (long) a.getValue() * a.getKey().remaining()));
+        List<ByteBuffer> selected = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<ByteBuffer, Integer> candidate : candidates) {
+            int length = candidate.getKey().remaining();
+            if (size + length <= maxSize) {
+                selected.add(candidate.getKey());
+                size += length;
+            }
+        }
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            ByteBuffer segment = selected.get(i);
+            dictionary.write(segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+        }
+        return dictionary.toByteArray();
+    }
+
+    private static void addSegment(Map<ByteBuffer, Integer> segments, byte[] sample, int start, int end, int count) {
+        if (start >= 0) {
+            segments.merge(ByteBuffer.wrap(sample, start, end - start).slice(), count, Math::max);
+        }
+    }
+
+    private static long shingle(byte[] bytes, int index) {
+        long value = 0;
+        for (int i = index; i < index + SHINGLE_LENGTH; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,145 @@
+package com.feyl.compress.dict;
+
+import com.feyl.utils.threadpool.CustomThreadPoolConfig;
+import com.feyl.utils.threadpool.ThreadPoolUtil;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 发送方向的压缩字典：按服务采样消息体、训练字典，并记录字典是否已经发给对端
+ *
+ * 每个编码器（即每个 channel）持有一个实例，只在该 channel 的 EventLoop 中访问，因此无需同步；
+ * 只有训练在所有 channel 共用的线程池中执行，不占用 IO 线程，训练好的字典通过 volatile 字段发布，之后的消息才开始使用。
+ * 字典面向的是小消息，只采样不超过 {@link #MAX_SAMPLE_LENGTH} 的消息体，样本占用的内存有上限。
+ * 字典 id 只在当前 channel 的发送方向上有意义，对端解码器按 id 保存收到的字典。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class OutboundDictionaries {
+
+    /**
+     * 每个服务采集多少个样本后训练字典
+     */
+    private static final int SAMPLE_COUNT = 32;
+
+    /**
+     * 参与采样的消息体最大字节数，更大的消息体本身压缩效果已经足够，不需要字典
+     */
+    private static final int MAX_SAMPLE_LENGTH = 8 * 1024;
+
+    /**
+     * 训练字典的线程池名
+     */
+    private static final String TRAINER_POOL = "rpc-dictionary-trainer";
+
+    /**
+     * 字典最大字节数，小于 deflate 的 32K 滑动窗口；接收方按同样的上限校验对端发来的字典
+     */
+    public static final int MAX_DICTIONARY_SIZE = 8 * 1024;
+
+    /**
+     * 每个 channel 最多训练的字典数量，避免服务过多时占用过多内存；接收方按同样的上限校验
+     */
+    public static final int MAX_DICTIONARIES = 64;
+
+    /**
+     * key：字典对应的服务（interface name + group + version）
+     * value：该服务的采样与训练状态
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private int nextId = DictionaryCompressor.NO_DICTIONARY + 1;
+
+    /**
+     * 获取服务已训练好的字典
+     *
+     * @return 字典，还在采样中时返回 null
+     */
+    public CompressionDictionary get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.dictionary;
+    }
+
+    /**
+     * 字典是否已经发送给对端
+     */
+    public boolean isAnnounced(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.announced;
+    }
+
+    public void markAnnounced(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.announced = true;
+        }
+    }
+
+    /**
+     * 采样一个消息体，样本足够时训练出字典
+     *
+     * @param key    字典对应的服务
+     * @param buf    消息体所在的缓冲区
+     * @param index  消息体起始下标
+     * @param length 消息体长度
+     */
+    public void sample(String key, ByteBuf buf, int index, int length) {
+        if (length > MAX_SAMPLE_LENGTH) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= MAX_DICTIONARIES) {
+                return;
+            }
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        if (entry.samples == null) {
+            return;
+        }
+        byte[] sample = new byte[length];
+        buf.getBytes(index, sample);
+        entry.samples.add(sample);
+        if (entry.samples.size() >= SAMPLE_COUNT) {
+            // 样本交给训练线程后不再采样，id 在 EventLoop 中分配
+            List<byte[]> samples = entry.samples;
+            entry.samples = null;
+            train(key, entry, nextId++, samples);
+        }
+    }
+
+    private static void train(String key, Entry entry, int id, List<byte[]> samples) {
+        try {
+            ThreadPoolUtil.createCustomThreadPoolIfAbsent(new CustomThreadPoolConfig(), TRAINER_POOL, true).execute(() -> {
+                byte[] dictionary = DictionaryTrainer.train(samples, MAX_DICTIONARY_SIZE);
+                // 样本中没有公共内容时不生成字典
+                if (dictionary.length > 0) {
+                    entry.dictionary = new CompressionDictionary(id, dictionary);
+                    log.info("Trained compression dictionary [{}] for [{}], size: [{}]", id, key, dictionary.length);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Skip training compression dictionary for [{}]: trainer is busy", key);
+        }
+    }
+
+    private static final class Entry {
+
+        private List<byte[]> samples = new ArrayList<>(SAMPLE_COUNT);
+
+        /**
+         * 在训练线程中写入，在 EventLoop 中读取
+         */
+        private volatile CompressionDictionary dictionary;
+
+        private boolean announced;
+    }
+}
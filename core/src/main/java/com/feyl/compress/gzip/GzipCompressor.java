@@ -1,33 +1,79 @@
 package com.feyl.compress.gzip;
 
+import cn.hutool.core.io.IoUtil;
 import com.feyl.compress.Compressor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
 /**
  * Gzip压缩
  *
+ * {@link java.util.zip.GZIPOutputStream} 和 {@link java.util.zip.GZIPInputStream} 每次都会新建 Deflater / Inflater，
+ * 并在本地内存中分配 zlib 状态，频繁创建、释放的开销很大。
+ * 这里按线程复用 Deflater / Inflater（用完后 reset），自行读写 gzip 头部和尾部，输出格式与 JDK 实现完全兼容。
+ *
+ * <a href="https://www.rfc-editor.org/rfc/rfc1952">GZIP file format specification</a>
+ *
  * @author Feyl
  */
 public class GzipCompressor  implements Compressor {
 
     private static final int BUFFER_SIZE = 1024 * 4; //4K
 
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    /**
+     * gzip 头部：魔数、压缩方法（deflate）、标志位、修改时间、额外标志、操作系统
+     */
+    private static final byte[] HEADER = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * gzip 头部标志位
+     */
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * 每个线程复用一个 Deflater（nowrap：只输出原始 deflate 数据，gzip 头尾自行处理）
+     */
+    private final ThreadLocal<Deflater> deflaterThreadLocal = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    /**
+     * 每个线程复用一个 Inflater
+     */
+    private final ThreadLocal<Inflater> inflaterThreadLocal = ThreadLocal.withInitial(() -> new Inflater(true));
+
     @Override
     public byte[] compress(byte[] bytes) {
         if (bytes == null) {
             throw new NullPointerException("bytes is null");
         }
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 2 + HEADER.length);
+        try (OutputStream gos = compress(baos)) {
             gos.write(bytes);
-            gos.flush();
-            gos.finish();
-            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Gzip compress error", e);
+        }
+        return baos.toByteArray();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        try {
+            return new PooledGzipOutputStream(out, deflaterThreadLocal.get());
         } catch (IOException e) {
             throw new RuntimeException("Gzip compress error", e);
         }
@@ -38,16 +84,183 @@ public class GzipCompressor  implements Compressor {
         if (bytes == null) {
             throw new NullPointerException("bytes is null");
         }
-        try(ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
-            byte[] buf = new byte[BUFFER_SIZE];
-            int n;
-            while ((n = gis.read(buf)) > -1) {
-                baos.write(buf, 0, n);
-            }
-            return baos.toByteArray();
+        try (InputStream gis = decompress(new ByteArrayInputStream(bytes))) {
+            return IoUtil.readBytes(gis, false);
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Gzip decompress error", e);
+        }
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        try {
+            return new PooledGzipInputStream(in, inflaterThreadLocal.get());
         } catch (IOException e) {
             throw new RuntimeException("Gzip decompress error", e);
         }
     }
+
+    /**
+     * 使用复用的 Deflater 的 gzip 输出流，关闭时写出尾部并 reset Deflater，不关闭目标流
+     */
+    private static final class PooledGzipOutputStream extends DeflaterOutputStream {
+
+        private final CRC32 crc = new CRC32();
+
+        private boolean closed;
+
+        PooledGzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, BUFFER_SIZE);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                def.finish();
+                while (!def.finished()) {
+                    deflate();
+                }
+                // 尾部：CRC32 + 原始数据长度，均为小端序
+                writeInt((int) crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    finish();
+                    out.flush();
+                } finally {
+                    def.reset();
+                }
+            }
+        }
+
+        private void writeInt(int i) throws IOException {
+            out.write(i & 0xFF);
+            out.write((i >> 8) & 0xFF);
+            out.write((i >> 16) & 0xFF);
+            out.write((i >> 24) & 0xFF);
+        }
+    }
+
+    /**
+     * 使用复用的 Inflater 的 gzip 输入流，读到 deflate 数据结束时校验尾部，关闭时 reset Inflater
+     */
+    private static final class PooledGzipInputStream extends InflaterInputStream {
+
+        private final CRC32 crc = new CRC32();
+
+        private boolean eos;
+
+        private boolean closed;
+
+        PooledGzipInputStream(InputStream in, Inflater inflater) throws IOException {
+            super(in, inflater, BUFFER_SIZE);
+            readHeader();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eos) {
+                return -1;
+            }
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                readTrailer();
+                eos = true;
+            } else {
+                crc.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.reset();
+                in.close();
+            }
+        }
+
+        private void readHeader() throws IOException {
+            if (readUShort(in) != GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (readUByte(in) != Deflater.DEFLATED) {
+                throw new ZipException("Unsupported compression method");
+            }
+            int flags = readUByte(in);
+            // 跳过修改时间、额外标志、操作系统
+            skipBytes(6);
+            if ((flags & FEXTRA) == FEXTRA) {
+                skipBytes(readUShort(in));
+            }
+            if ((flags & FNAME) == FNAME) {
+                while (readUByte(in) != 0) {
+                    // 跳过文件名
+                }
+            }
+            if ((flags & FCOMMENT) == FCOMMENT) {
+                while (readUByte(in) != 0) {
+                    // 跳过注释
+                }
+            }
+            if ((flags & FHCRC) == FHCRC) {
+                skipBytes(2);
+            }
+        }
+
+        private void readTrailer() throws IOException {
+            // Inflater 可能已经从源流多读了一部分数据到 buf 中，尾部先从这部分读取
+            int remaining = inf.getRemaining();
+            long[] trailer = new long[2];
+            for (int i = 0; i < trailer.length; i++) {
+                long value = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int b;
+                    if (remaining > 0) {
+                        b = buf[len - remaining--] & 0xFF;
+                    } else {
+                        b = readUByte(in);
+                    }
+                    value |= ((long) b) << shift;
+                }
+                trailer[i] = value;
+            }
+            if (trailer[0] != crc.getValue() || trailer[1] != (inf.getBytesWritten() & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+        }
+
+        private void skipBytes(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                readUByte(in);
+            }
+        }
+
+        private static int readUShort(InputStream in) throws IOException {
+            int b = readUByte(in);
+            return (readUByte(in) << 8) | b;
+        }
+
+        private static int readUByte(InputStream in) throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            return b;
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.feyl.compress.none;
+
+import com.feyl.compress.Compressor;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 不压缩：原样透传消息体，用于小消息或压缩收益很低的消息
+ *
+ * @author Feyl
+ */
+public class NoneCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            /**
+             * 不关闭目标流
+             */
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        return in;
+    }
+}
@@ -0,0 +1,40 @@
+package com.feyl.compress.snappy;
+
+import com.feyl.compress.Compressor;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+
+/**
+ * Snappy 块压缩，与 LZ4 同属追求速度的压缩算法
+ *
+ * <a href="https://github.com/xerial/snappy-java">snappy-java</a>
+ *
+ * @author Feyl
+ */
+public class SnappyCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            return Snappy.compress(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Snappy compress error", e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            return Snappy.uncompress(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Snappy decompress error", e);
+        }
+    }
+}
@@ -1,13 +1,10 @@
 package com.feyl.config;
 
 import com.feyl.registry.zookeeper.util.CuratorUtil;
-import com.feyl.remoting.transport.netty.server.NettyRpcServer;
 import com.feyl.utils.threadpool.ThreadPoolUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.UnknownHostException;
 
 /**
  * 当服务器关闭时，执行一些操作，例如取消注册所有服务、关闭所有线程池
@@ -26,20 +23,17 @@ public class CustomShutdownHook {
     /**
      * 从注册中心取消注册的所有服务并关闭添加关闭线程池的钩子函数
      *
+     * @param serverAddress 服务注册时使用的服务端地址
+     *
      * <a href="https://blog.csdn.net/yangshangwei/article/details/102583944">
      *              高并发编程-Runtime.getRuntime().addShutdownHook为自己的应用添加hook</a>
      * <a href="https://blog.csdn.net/wk1134314305/article/details/78504269">addShutdownHook函数的用法和注意事项</a>
      */
-    public void clearAll() {
+    public void clearAll(InetSocketAddress serverAddress) {
         log.info("add ShutdownHook for clearAll");
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                InetSocketAddress inetSocketAddress = new InetSocketAddress(InetAddress.getLocalHost().getHostAddress(), NettyRpcServer.PORT);
-                //从zookeeper注册中心取消注册的所有服务
-                CuratorUtil.clearRegistry(CuratorUtil.getZookeeperClient(), inetSocketAddress);
-            } catch (UnknownHostException e) {
-                throw new RuntimeException(e);
-            }
+            //从zookeeper注册中心取消注册的所有服务
+            CuratorUtil.clearRegistry(CuratorUtil.getZookeeperClient(), serverAddress);
             ThreadPoolUtil.shutDownAllThreadPool();
         }));
     }
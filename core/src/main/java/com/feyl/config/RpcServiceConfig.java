@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * RPC服务配置类
  *
@@ -30,6 +32,47 @@ public class RpcServiceConfig {
      */
     private String version = "";
 
+    /**
+     * 调用超时时间（毫秒），为 0 时使用默认超时时间
+     */
+    private long timeout;
+
+    /**
+     * key：方法名
+     * value：该方法的调用超时时间（毫秒），优先于 timeout
+     */
+    private Map<String, Long> methodTimeouts;
+
+    /**
+     * 服务端执行该服务请求的线程模型，取值为 {@link com.feyl.enums.DispatchModeEnum} 的 name，为空时使用默认配置
+     */
+    private String dispatch;
+
+    /**
+     * isolated 线程模型下服务独占线程池的线程数，为 0 时使用默认线程数
+     */
+    private int threads;
+
+    /**
+     * 客户端是否以单向调用发送所有返回 void 的方法
+     */
+    private boolean oneway;
+
+    /**
+     * 获取方法的调用超时时间
+     *
+     * @param methodName 方法名
+     * @return 超时时间（毫秒），为 0 时使用默认超时时间
+     */
+    public long getTimeout(String methodName) {
+        if (methodTimeouts != null) {
+            Long methodTimeout = methodTimeouts.get(methodName);
+            if (methodTimeout != null) {
+                return methodTimeout;
+            }
+        }
+        return timeout;
+    }
 
     /**
      * interface name + group + version
@@ -0,0 +1,194 @@
+package com.feyl.provider;
+
+import com.feyl.annotation.RpcBatchable;
+import com.feyl.utils.threadpool.CustomThreadPoolConfig;
+import com.feyl.utils.threadpool.ThreadPoolUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并被 {@link RpcBatchable} 标注的方法的并发请求，调用一次批量方法后把结果分发给每个请求
+ *
+ * 第一个请求到达时开始计时，窗口结束或请求数达到上限时取出已收集的请求，在服务的业务线程池中调用批量方法；
+ * 服务的线程模型为 direct 时，请求数达到上限在提交请求的线程中直接调用，窗口结束则交给合并器共用的线程池调用，
+ * 计时线程本身不执行服务方法。
+ * 请求可能来自多个业务线程，收集请求的操作加锁，批量调用本身不持有锁。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class RequestMerger {
+
+    /**
+     * 所有合并器共用的计时线程，只负责在窗口结束时触发调用
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtil.createThreadFactory("rpc-request-merger", true));
+
+    /**
+     * direct 服务在窗口结束时执行批量调用的线程池名
+     */
+    private static final String INVOKER_POOL = "rpc-request-merger-invoker";
+
+    private final ServiceMethod bulkMethod;
+
+    private final long windowMicros;
+
+    private final int maxBatchSize;
+
+    /**
+     * 服务的业务线程池，direct 服务为 null
+     */
+    private final Executor executor;
+
+    private List<Object> args = new ArrayList<>();
+
+    private List<CompletableFuture<Object>> futures = new ArrayList<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param service  服务对象
+     * @param method   被 {@link RpcBatchable} 标注的单个查询方法
+     * @param executor 服务的业务线程池，为 null 时请求数达到上限在提交请求的线程中直接调用，窗口结束时在合并器共用的线程池中调用
+     */
+    public RequestMerger(Object service, Method method, RpcBatchable batchable, Executor executor) {
+        if (method.getParameterCount() != 1) {
+            throw new IllegalArgumentException("@RpcBatchable method must have exactly one parameter: " + method);
+        }
+        this.bulkMethod = new ServiceMethod(null, service, findBulkMethod(service.getClass(), batchable.value()), null);
+        this.windowMicros = batchable.windowMicros();
+        this.maxBatchSize = Math.max(1, batchable.maxBatchSize());
+        this.executor = executor;
+    }
+
+    /**
+     * 提交一个请求
+     *
+     * @param arg 单个查询方法的参数
+     * @return 批量调用完成后以该请求的结果完成的 future，批量调用失败时所有请求以同一个异常完成
+     */
+    public CompletableFuture<Object> submit(Object arg) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        boolean full;
+        synchronized (this) {
+            args.add(arg);
+            futures.add(future);
+            full = args.size() >= maxBatchSize;
+            if (!full && scheduledFlush == null) {
+                scheduledFlush = TIMER.schedule(() -> flush(true), windowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (full) {
+            flush(false);
+        }
+        return future;
+    }
+
+    /**
+     * @param timer 是否由计时线程在窗口结束时触发
+     */
+    private void flush(boolean timer) {
+        List<Object> batchArgs;
+        List<CompletableFuture<Object>> batchFutures;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (args.isEmpty()) {
+                return;
+            }
+            batchArgs = args;
+            batchFutures = futures;
+            args = new ArrayList<>();
+            futures = new ArrayList<>();
+        }
+        try {
+            invoker(timer).execute(() -> invoke(batchArgs, batchFutures));
+        } catch (RejectedExecutionException e) {
+            batchFutures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 执行批量调用的线程池，direct 服务不能占用所有合并器共用的计时线程
+     */
+    private Executor invoker(boolean timer) {
+        if (executor != null) {
+            return executor;
+        }
+        if (!timer) {
+            return Runnable::run;
+        }
+        return ThreadPoolUtil.createCustomThreadPoolIfAbsent(new CustomThreadPoolConfig(), INVOKER_POOL, true);
+    }
+
+    private void invoke(List<Object> batchArgs, List<CompletableFuture<Object>> batchFutures) {
+        Object result;
+        try {
+            result = bulkMethod.invoke(new Object[]{batchArgs});
+        } catch (Throwable e) {
+            batchFutures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> {
+                if (e != null) {
+                    batchFutures.forEach(future -> future.completeExceptionally(e));
+                } else {
+                    dispatch(value, batchArgs, batchFutures);
+                }
+            });
+        } else {
+            dispatch(result, batchArgs, batchFutures);
+        }
+    }
+
+    /**
+     * 把批量方法的结果分发给每个请求
+     */
+    private void dispatch(Object result, List<Object> batchArgs, List<CompletableFuture<Object>> batchFutures) {
+        log.debug("Merged [{}] requests into [{}]", batchArgs.size(), bulkMethod.getMethod().getName());
+        if (result instanceof Map) {
+            Map<?, ?> results = (Map<?, ?>) result;
+            for (int i = 0; i < batchArgs.size(); i++) {
+                batchFutures.get(i).complete(results.get(batchArgs.get(i)));
+            }
+        } else if (result instanceof List && ((List<?>) result).size() == batchArgs.size()) {
+            List<?> results = (List<?>) result;
+            for (int i = 0; i < batchArgs.size(); i++) {
+                batchFutures.get(i).complete(results.get(i));
+            }
+        } else {
+            IllegalStateException e = new IllegalStateException(bulkMethod.getMethod()
+                    + " must return a Map or a List of the same size as its argument, but returned: " + result);
+            batchFutures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 查找只有一个 List（或 Collection）参数的批量方法
+     */
+    private static Method findBulkMethod(Class<?> serviceClass, String name) {
+        for (Method method : serviceClass.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1
+                    && method.getParameterTypes()[0].isAssignableFrom(ArrayList.class)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Bulk method " + name + "(List) not found in " + serviceClass.getName());
+    }
+}
@@ -1,6 +1,10 @@
 package com.feyl.provider;
 
 import com.feyl.config.RpcServiceConfig;
+import com.feyl.remoting.dto.MethodTable;
+import com.feyl.remoting.dto.RpcRequest;
+
+import java.net.InetSocketAddress;
 
 /**
  * 存储和提供 服务对象
@@ -24,10 +28,34 @@ public interface ServiceProvider {
      */
     Object getService(String rpcServiceName);
 
+    /**
+     * 获取请求调用的服务方法，添加服务时已经为每个方法构建好调用器
+     * 请求携带方法ID时按方法ID查找，否则按 服务名 + 方法名 + 参数类型 的方法签名查找
+     *
+     * @param rpcRequest 客户端请求
+     * @return 服务方法
+     */
+    ServiceMethod getServiceMethod(RpcRequest rpcRequest);
+
+    /**
+     * 获取所有已添加服务的方法表，在连接握手时发送给客户端
+     *
+     * @return 方法表
+     */
+    MethodTable getMethodTable();
+
     /**
      * 将 RPC服务配置注册到注册中心
+     * 服务端已经绑定端口时立即注册，否则在 {@link #publishAll(InetSocketAddress)} 时以服务端的实际地址注册
      *
      * @param rpcServiceConfig RPC服务相关的属性
      */
     void publishService(RpcServiceConfig rpcServiceConfig);
+
+    /**
+     * 服务端绑定端口后调用，以服务端的实际地址注册所有已添加的服务，之后发布的服务也使用该地址
+     *
+     * @param serverAddress 服务端地址
+     */
+    void publishAll(InetSocketAddress serverAddress);
 }
@@ -4,18 +4,24 @@ import com.feyl.config.RpcServiceConfig;
 import com.feyl.enums.RpcErrorMessageEnum;
 import com.feyl.exception.RpcException;
 import com.feyl.extension.ExtensionLoader;
+import com.feyl.provider.ServiceMethod;
 import com.feyl.provider.ServiceProvider;
+import com.feyl.factory.SingletonFactory;
 import com.feyl.registry.ServiceRegistry;
-import com.feyl.remoting.transport.netty.server.NettyRpcServer;
+import com.feyl.remoting.dispatch.Dispatcher;
+import com.feyl.remoting.dto.MethodDescriptor;
+import com.feyl.remoting.dto.MethodTable;
+import com.feyl.remoting.dto.RpcRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.checkerframework.checker.units.qual.C;
 
-import java.net.InetAddress;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
-import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * 基于Zookeeper的服务提供者实现
@@ -40,25 +46,52 @@ public class ZkServiceProviderImpl implements ServiceProvider {
      */
     private final Set<String> registeredService;
 
+    /**
+     * key：方法ID
+     * value：服务方法
+     */
+    private final Map<Integer, ServiceMethod> serviceMethods;
+
+    /**
+     * key：方法签名（interface name + group + version # 方法名(参数类型)）
+     * value：服务方法
+     */
+    private final Map<String, ServiceMethod> serviceMethodIndex;
+
+    /**
+     * 已导出方法的方法表，添加服务时重新生成
+     */
+    private volatile MethodTable methodTable;
+
     private final ServiceRegistry serviceRegistry;
 
+    /**
+     * 服务端绑定端口后的实际地址，绑定之前为 null
+     */
+    private volatile InetSocketAddress serverAddress;
 
     public ZkServiceProviderImpl() {
         serviceMap = new ConcurrentHashMap<>();
         registeredService = ConcurrentHashMap.newKeySet();
+        serviceMethods = new ConcurrentHashMap<>();
+        serviceMethodIndex = new ConcurrentHashMap<>();
+        methodTable = new MethodTable(new ArrayList<>());
         serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class).getExtension("zookeeper");
     }
     /**
      * 内存中缓存已经注册的服务名（interface name + group + version）
      */
     @Override
-    public void addService(RpcServiceConfig rpcServiceConfig) {
+    public synchronized void addService(RpcServiceConfig rpcServiceConfig) {
         String rpcServiceName = rpcServiceConfig.getRpcServiceName();
         if (registeredService.contains(rpcServiceName)){
             return;
         }
         registeredService.add(rpcServiceName);
         serviceMap.put(rpcServiceName, rpcServiceConfig.getService());
+        Executor executor = SingletonFactory.getInstance(Dispatcher.class)
+                .executor(rpcServiceName, rpcServiceConfig.getDispatch(), rpcServiceConfig.getThreads());
+        addServiceMethods(rpcServiceName, rpcServiceConfig.getService(), executor);
         log.info("Add service: {} and interfaces: {}", rpcServiceName, rpcServiceConfig.getService().getClass().getInterfaces());
     }
 
@@ -76,18 +109,76 @@ public class ZkServiceProviderImpl implements ServiceProvider {
         return service;
     }
 
+    @Override
+    public ServiceMethod getServiceMethod(RpcRequest rpcRequest) {
+        ServiceMethod serviceMethod;
+        if (rpcRequest.getMethodId() != 0) {
+            serviceMethod = serviceMethods.get(rpcRequest.getMethodId());
+        } else {
+            serviceMethod = serviceMethodIndex.get(MethodDescriptor.signature(rpcRequest));
+        }
+        if (serviceMethod == null) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcRequest.getMethodId() != 0
+                    ? "methodId: " + rpcRequest.getMethodId() : rpcRequest.getRpcServiceName() + "#" + rpcRequest.getMethodName());
+        }
+        return serviceMethod;
+    }
+
+    @Override
+    public MethodTable getMethodTable() {
+        return methodTable;
+    }
+
+    /**
+     * 为服务接口的每个方法分配方法ID，解析出服务对象上对应的方法并构建调用器，按方法ID和方法签名建立索引
+     */
+    private void addServiceMethods(String rpcServiceName, Object service, Executor executor) {
+        List<MethodDescriptor> methods = new ArrayList<>(methodTable.getMethods());
+        for (Method interfaceMethod : service.getClass().getInterfaces()[0].getMethods()) {
+            Method method;
+            try {
+                method = service.getClass().getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            String[] paramTypes = new String[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                paramTypes[i] = parameterTypes[i].getName();
+            }
+            MethodDescriptor descriptor = MethodDescriptor.builder()
+                    .methodId(methods.size() + 1)
+                    .rpcServiceName(rpcServiceName)
+                    .methodName(method.getName())
+                    .paramTypes(paramTypes).build();
+            ServiceMethod serviceMethod = new ServiceMethod(descriptor, service, method, executor);
+            serviceMethods.put(descriptor.getMethodId(), serviceMethod);
+            serviceMethodIndex.put(descriptor.signature(), serviceMethod);
+            methods.add(descriptor);
+        }
+        methodTable = new MethodTable(methods);
+    }
+
     /**
      * 将 RPC服务配置注册到注册中心
      * 以 interface name + group + version / ip + port 的字符串形式注册（在zookeeper 中以该字符串为路径创建持久结点）
+     * 服务端还没有绑定端口时只缓存服务，绑定后由 {@link #publishAll(InetSocketAddress)} 统一注册
      */
     @Override
     public void publishService(RpcServiceConfig rpcServiceConfig) {
-        try {
-            String host = InetAddress.getLocalHost().getHostAddress();
-            this.addService(rpcServiceConfig);
-            serviceRegistry.registerService(rpcServiceConfig.getRpcServiceName(), new InetSocketAddress(host, NettyRpcServer.PORT));
-        } catch (UnknownHostException e) {
-            log.error("Occur exception when getHostAddress", e);
+        this.addService(rpcServiceConfig);
+        InetSocketAddress address = serverAddress;
+        if (address != null) {
+            serviceRegistry.registerService(rpcServiceConfig.getRpcServiceName(), address);
+        }
+    }
+
+    @Override
+    public void publishAll(InetSocketAddress serverAddress) {
+        this.serverAddress = serverAddress;
+        for (String rpcServiceName : registeredService) {
+            serviceRegistry.registerService(rpcServiceName, serverAddress);
         }
+        log.info("Published services [{}] at [{}]", registeredService, serverAddress);
     }
 }
@@ -1,28 +1,28 @@
 package com.feyl.proxy;
 
 import com.feyl.config.RpcServiceConfig;
-import com.feyl.enums.RpcErrorMessageEnum;
-import com.feyl.enums.RpcResponseCodeEnum;
-import com.feyl.exception.RpcException;
-import com.feyl.remoting.dto.RpcRequest;
-import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.enums.ProxyTypeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.proxy.stub.RpcStubGenerator;
 import com.feyl.remoting.transport.RpcRequestTransport;
-import com.feyl.remoting.transport.netty.client.NettyRpcClient;
-import com.feyl.remoting.transport.socket.SocketRpcClient;
+import com.feyl.utils.RpcConfigUtil;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RPC客户端 动态代理类
  * 当动态代理对象调用方法时，它实际上会调用下面的invoke方法。
  * 正是由于动态代理，客户端调用的远程方法就像调用本地方法一样（中间进程是屏蔽的）
  *
+ * 每个方法的远程调用信息只在第一次调用时计算一次，缓存为 {@link RpcMethodInvoker}。
+ * 配置 rpc.client.proxy=stub 时，改为使用运行时生成的存根类（见 {@link RpcStubGenerator}），调用不再经过 InvocationHandler。
+ *
  * <a href="https://juejin.cn/post/6844903744954433544">Java 动态代理详解</a>
  *
  * @author Feyl
@@ -30,7 +30,8 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class RpcClientProxy implements InvocationHandler {
 
-    private static final String INTERFACE_NAME = "interfaceName";
+    private static final ProxyTypeEnum PROXY_TYPE = ProxyTypeEnum.fromName(
+            RpcConfigUtil.getString(RpcConfigEnum.CLIENT_PROXY, ProxyTypeEnum.JDK.getName()));
 
     /**
      * 用于向服务器发送请求，有两种实现：socket 和 netty。
@@ -39,6 +40,12 @@ public class RpcClientProxy implements InvocationHandler {
 
     private final RpcServiceConfig rpcServiceConfig;
 
+    /**
+     * key：代理对象调用的方法
+     * value：该方法的远程调用
+     */
+    private final Map<Method, RpcMethodInvoker> invokers = new ConcurrentHashMap<>();
+
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
         this.rpcRequestTransport = rpcRequestTransport;
         this.rpcServiceConfig = rpcServiceConfig;
@@ -50,13 +57,27 @@ public class RpcClientProxy implements InvocationHandler {
     }
 
     /**
-     * 获取代理对象
+     * 获取代理对象，配置为使用存根且接口可以生成存根时返回存根对象
      */
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
+        if (PROXY_TYPE == ProxyTypeEnum.STUB && RpcStubGenerator.isSupported(clazz)) {
+            return getStub(clazz);
+        }
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
     }
 
+    /**
+     * 获取运行时生成的存根对象
+     */
+    public <T> T getStub(Class<T> clazz) {
+        return RpcStubGenerator.newStub(clazz, this::invoker);
+    }
+
+    private RpcMethodInvoker invoker(Method method) {
+        return new RpcMethodInvoker(rpcRequestTransport, rpcServiceConfig, method);
+    }
+
 
     /**
      * 当使用代理对象调用方法时，实际上会调用此方法。
@@ -66,42 +87,8 @@ public class RpcClientProxy implements InvocationHandler {
      * <a href="https://www.cxyzjd.com/article/qq_22162093/115486647">@SneakyThrows注解</a>
      */
     @SneakyThrows
-    @SuppressWarnings("unchecked")
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
-        log.info("invoked method: [{}]", method.getName());
-        RpcRequest rpcRequest = RpcRequest.builder()
-                .requestId(UUID.randomUUID().toString())
-                .interfaceName(method.getDeclaringClass().getName())
-                .methodName(method.getName())
-                .paramTypes(method.getParameterTypes())
-                .parameters(args)
-                .group(rpcServiceConfig.getGroup())
-                .version(rpcServiceConfig.getVersion())
-                .build();
-        RpcResponse<Object> rpcResponse = null;
-        if (rpcRequestTransport instanceof NettyRpcClient) {
-            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-            rpcResponse = completableFuture.get();
-        }
-        if (rpcRequestTransport instanceof SocketRpcClient) {
-            rpcResponse = (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-        }
-        this.check(rpcResponse, rpcRequest);
-        return rpcResponse.getData();
-    }
-
-    private void check(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
-        if (rpcResponse == null) {
-            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
-        }
-
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
-            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
-        }
-
-        if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
-            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
-        }
+        return invokers.computeIfAbsent(method, this::invoker).invoke(args);
     }
 }
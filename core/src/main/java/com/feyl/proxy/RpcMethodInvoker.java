@@ -0,0 +1,236 @@
+package com.feyl.proxy;
+
+import com.feyl.annotation.Oneway;
+import com.feyl.annotation.RpcAsync;
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.enums.RpcErrorMessageEnum;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.exception.RpcException;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.remoting.dto.MethodDescriptor;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.stream.RpcStreamObserver;
+import com.feyl.remoting.transport.RpcRequestTransport;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 服务接口一个方法的远程调用
+ *
+ * 接口名、方法名、参数类型、group、version、超时时间、方法签名以及是否为异步方法都在创建时计算好，
+ * 每次调用只需填入请求ID和实际参数后交给传输层，不再反射获取方法信息。
+ *
+ * @author Feyl
+ */
+public class RpcMethodInvoker {
+
+    private static final String INTERFACE_NAME = "interfaceName";
+
+    /**
+     * 请求ID生成器，请求ID只需要在同一个连接上唯一
+     */
+    private static final AtomicLong REQUEST_ID = new AtomicLong();
+
+    private final RpcRequestTransport rpcRequestTransport;
+
+    private final String interfaceName;
+
+    private final String methodName;
+
+    private final Class<?>[] paramTypes;
+
+    private final String group;
+
+    private final String version;
+
+    private final long timeout;
+
+    private final String signature;
+
+    /**
+     * 返回值为 CompletableFuture（或 CompletionStage）的方法为异步方法
+     */
+    private final boolean async;
+
+    /**
+     * 是否为单向调用：被 {@link Oneway} 标注的方法，或者配置了单向调用的服务中返回 void 的方法
+     */
+    private final boolean oneway;
+
+    /**
+     * 返回值为 Iterator 或 Stream 的方法为流式方法，服务端逐个发送结果中的元素
+     */
+    private final boolean stream;
+
+    /**
+     * 流式方法是否返回 Stream
+     */
+    private final boolean returnsStream;
+
+    /**
+     * 唯一的参数和返回值都是 {@link RpcStreamObserver} 的方法为双向流式方法
+     */
+    private final boolean bidiStream;
+
+    public RpcMethodInvoker(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig, Method method) {
+        this.rpcRequestTransport = rpcRequestTransport;
+        this.interfaceName = serviceInterface(method.getDeclaringClass()).getName();
+        this.methodName = method.getName();
+        this.paramTypes = method.getParameterTypes();
+        this.group = rpcServiceConfig.getGroup();
+        this.version = rpcServiceConfig.getVersion();
+        this.timeout = rpcServiceConfig.getTimeout(methodName);
+        Class<?> returnType = method.getReturnType();
+        this.async = returnType == CompletableFuture.class || returnType == CompletionStage.class;
+        if (method.isAnnotationPresent(Oneway.class) && returnType != void.class && !async) {
+            throw new IllegalArgumentException("@Oneway method must return void or CompletableFuture<Void>: " + method);
+        }
+        this.oneway = method.isAnnotationPresent(Oneway.class) || (rpcServiceConfig.isOneway() && returnType == void.class);
+        this.returnsStream = returnType == Stream.class;
+        this.stream = returnsStream || returnType == Iterator.class;
+        this.bidiStream = returnType == RpcStreamObserver.class && paramTypes.length == 1
+                && paramTypes[0] == RpcStreamObserver.class;
+        String[] paramTypeNames = new String[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramTypeNames[i] = paramTypes[i].getName();
+        }
+        this.signature = MethodDescriptor.signature(interfaceName + group + version, methodName, paramTypeNames);
+    }
+
+    /**
+     * 发起远程调用
+     *
+     * @param args 调用方法传递的实际参数
+     * @return 远程方法的返回值，异步方法返回 CompletableFuture，流式方法返回边接收边消费的 Iterator 或 Stream，
+     *         双向流式方法返回向服务端发送消息的 RpcStreamObserver
+     */
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object[] args) throws Exception {
+        if (bidiStream && args[0] == null) {
+            throw new IllegalArgumentException("RpcStreamObserver must not be null");
+        }
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .requestId(REQUEST_ID.incrementAndGet())
+                .interfaceName(interfaceName)
+                .methodName(methodName)
+                .paramTypes(paramTypes)
+                // 双向流式调用的 observer 留在客户端，服务端调用时换成向客户端发送消息的 observer
+                .parameters(bidiStream ? new Object[1] : args)
+                .group(group)
+                .version(version)
+                .timeout(timeout)
+                .signature(signature)
+                .oneway(oneway)
+                .stream(stream)
+                .streamObserver(bidiStream ? (RpcStreamObserver<Object>) args[0] : null)
+                .build();
+        Object result = rpcRequestTransport.sendRpcRequest(rpcRequest);
+        if (bidiStream) {
+            if (!(result instanceof RpcStreamObserver)) {
+                throw new UnsupportedOperationException("Transport does not support bidirectional streaming: "
+                        + rpcRequestTransport.getClass().getName());
+            }
+            return result;
+        }
+        if (stream) {
+            return stream(result, rpcRequest);
+        }
+        if (oneway) {
+            // 单向调用没有响应，请求交给传输层后立即返回，异步方法返回写出完成的 future
+            if (!async) {
+                return null;
+            }
+            return result instanceof CompletableFuture
+                    ? ((CompletableFuture<?>) result).thenApply(written -> null) : CompletableFuture.completedFuture(null);
+        }
+        RpcResponse<Object> rpcResponse;
+        if (result instanceof CompletableFuture) {
+            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) result;
+            if (async) {
+                // 异步方法直接返回传输层的 future，不阻塞调用线程
+                return completableFuture.thenApply(response -> {
+                    check(response, rpcRequest);
+                    return response.getData();
+                });
+            }
+            // get() 通过 LockSupport.park 等待，不持有监视器锁，在虚拟线程中调用不会钉住载体线程
+            rpcResponse = completableFuture.get();
+        } else {
+            rpcResponse = (RpcResponse<Object>) result;
+        }
+        check(rpcResponse, rpcRequest);
+        return async ? CompletableFuture.completedFuture(rpcResponse.getData()) : rpcResponse.getData();
+    }
+
+    /**
+     * 把传输层返回的流式响应转换为方法的返回值；传输层不支持流式调用时，服务端的完整结果作为一次响应返回
+     */
+    @SuppressWarnings("unchecked")
+    private Object stream(Object result, RpcRequest rpcRequest) throws Exception {
+        Iterator<Object> iterator;
+        if (result instanceof Iterator) {
+            iterator = (Iterator<Object>) result;
+        } else {
+            RpcResponse<Object> rpcResponse = result instanceof CompletableFuture
+                    ? ((CompletableFuture<RpcResponse<Object>>) result).get() : (RpcResponse<Object>) result;
+            check(rpcResponse, rpcRequest);
+            Object data = rpcResponse.getData();
+            iterator = data instanceof Iterable ? ((Iterable<Object>) data).iterator() : Collections.emptyIterator();
+        }
+        if (!returnsStream) {
+            return iterator;
+        }
+        Stream<Object> elements = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+        if (iterator instanceof AutoCloseable) {
+            // 关闭 Stream 时取消服务端尚未发送完的流
+            AutoCloseable closeable = (AutoCloseable) iterator;
+            elements = elements.onClose(() -> {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        return elements;
+    }
+
+    /**
+     * 获取请求对应的服务接口：被 {@link RpcAsync} 标注的异步接口对应其同步接口
+     */
+    private static Class<?> serviceInterface(Class<?> declaringClass) {
+        RpcAsync rpcAsync = declaringClass.getAnnotation(RpcAsync.class);
+        return rpcAsync == null ? declaringClass : rpcAsync.value();
+    }
+
+    private static void check(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
+        if (rpcResponse == null) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+
+        if (rpcRequest.getRequestId() != rpcResponse.getRequestId()) {
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+
+        if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
+            RpcError error = rpcResponse.getError();
+            if (error != null) {
+                // 服务端返回了失败原因，按原样抛给调用方
+                throw new RpcRemoteException(rpcResponse.getCode(), error.getExceptionClass(), error.getMessage(),
+                        error.getStackTrace());
+            }
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.feyl.proxy.stub;
+
+import com.feyl.proxy.RpcMethodInvoker;
+import lombok.extern.slf4j.Slf4j;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 运行时为服务接口生成客户端存根类
+ *
+ * 生成的存根类直接实现服务接口，持有每个方法预先创建好的 {@link RpcMethodInvoker}，接口方法的实现形如：
+ * <pre>
+ *     public String hello(String name) {
+ *         return (String) invokers[0].invoke(new Object[]{name});
+ *     }
+ * </pre>
+ * 与 JDK 动态代理相比，调用不经过 InvocationHandler，不需要按 Method 分派，也不会克隆参数类型数组。
+ *
+ * 只能为 public 接口生成存根；非 public 接口、default 方法由调用方回退到 JDK 动态代理或接口本身的实现。
+ *
+ * <a href="https://asm.ow2.io/asm4-guide.pdf">ASM 4 Guide</a>
+ *
+ * @author Feyl
+ */
+@Slf4j
+public final class RpcStubGenerator {
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+
+    private static final String INVOKER = Type.getInternalName(RpcMethodInvoker.class);
+
+    private static final String INVOKERS_FIELD = "invokers";
+
+    private static final String INVOKERS_DESCRIPTOR = "[" + Type.getDescriptor(RpcMethodInvoker.class);
+
+    private static final AtomicInteger STUB_ID = new AtomicInteger();
+
+    /**
+     * key：服务接口
+     * value：生成的存根类
+     */
+    private static final Map<Class<?>, StubClass> STUB_CLASSES = new ConcurrentHashMap<>();
+
+    private RpcStubGenerator() {
+    }
+
+    /**
+     * 是否可以为服务接口生成存根
+     */
+    public static boolean isSupported(Class<?> clazz) {
+        return clazz.isInterface() && Modifier.isPublic(clazz.getModifiers());
+    }
+
+    /**
+     * 创建服务接口的存根对象
+     *
+     * @param clazz          服务接口
+     * @param invokerFactory 为接口方法创建远程调用
+     * @return 存根对象
+     */
+    public static <T> T newStub(Class<T> clazz, Function<Method, RpcMethodInvoker> invokerFactory) {
+        if (!isSupported(clazz)) {
+            throw new IllegalArgumentException("Can not generate stub for non-public interface: " + clazz.getName());
+        }
+        StubClass stubClass = STUB_CLASSES.computeIfAbsent(clazz, RpcStubGenerator::generate);
+        RpcMethodInvoker[] invokers = new RpcMethodInvoker[stubClass.methods.size()];
+        for (int i = 0; i < invokers.length; i++) {
+            invokers[i] = invokerFactory.apply(stubClass.methods.get(i));
+        }
+        try {
+            return clazz.cast(stubClass.constructor.newInstance((Object) invokers));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Create stub of " + clazz.getName() + " failed", e);
+        }
+    }
+
+    private static StubClass generate(Class<?> clazz) {
+        List<Method> methods = stubMethods(clazz);
+        String className = RpcStubGenerator.class.getPackage().getName() + "." + clazz.getSimpleName()
+                + "$RpcStub" + STUB_ID.incrementAndGet();
+        String internalName = className.replace('.', '/');
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+                OBJECT, new String[]{Type.getInternalName(clazz)});
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, INVOKERS_FIELD, INVOKERS_DESCRIPTOR, null, null).visitEnd();
+        generateConstructor(cw, internalName);
+        for (int i = 0; i < methods.size(); i++) {
+            generateMethod(cw, internalName, methods.get(i), i);
+        }
+        cw.visitEnd();
+
+        StubClassLoader classLoader = new StubClassLoader(clazz.getClassLoader());
+        Class<?> stub = classLoader.define(className, cw.toByteArray());
+        try {
+            log.info("Generated rpc stub [{}] for [{}]", className, clazz.getName());
+            return new StubClass(stub.getConstructor(RpcMethodInvoker[].class), methods);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 需要实现的接口方法：包括父接口中的方法，不包括 default 方法和 static 方法，签名相同的方法只实现一次
+     */
+    private static List<Method> stubMethods(Class<?> clazz) {
+        List<Method> methods = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (signatures.add(method.getName() + Type.getMethodDescriptor(method))) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private static void generateConstructor(ClassWriter cw, String internalName) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + INVOKERS_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, INVOKERS_FIELD, INVOKERS_DESCRIPTOR);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 生成：return (R) invokers[index].invoke(new Object[]{arg0, arg1, ...});
+     */
+    private static void generateMethod(ClassWriter cw, String internalName, Method method, int index) {
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        Type returnType = Type.getReturnType(method);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, INVOKERS_FIELD, INVOKERS_DESCRIPTOR);
+        pushInt(mv, index);
+        mv.visitInsn(Opcodes.AALOAD);
+        if (argumentTypes.length == 0) {
+            // 与 JDK 动态代理一致，无参方法的参数数组为 null
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            pushInt(mv, argumentTypes.length);
+            mv.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+            int slot = 1;
+            for (int i = 0; i < argumentTypes.length; i++) {
+                mv.visitInsn(Opcodes.DUP);
+                pushInt(mv, i);
+                mv.visitVarInsn(argumentTypes[i].getOpcode(Opcodes.ILOAD), slot);
+                box(mv, argumentTypes[i]);
+                mv.visitInsn(Opcodes.AASTORE);
+                slot += argumentTypes[i].getSize();
+            }
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INVOKER, "invoke", "([Ljava/lang/Object;)Ljava/lang/Object;", false);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+        } else {
+            unbox(mv, returnType);
+            mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed != null) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf",
+                    Type.getMethodDescriptor(boxed, type), false);
+        }
+    }
+
+    private static void unbox(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed == null) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+        } else {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, boxed.getInternalName());
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value",
+                    Type.getMethodDescriptor(type), false);
+        }
+    }
+
+    /**
+     * 基本类型对应的包装类型，引用类型返回 null
+     */
+    private static Type boxedType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getType(Boolean.class);
+            case Type.CHAR:
+                return Type.getType(Character.class);
+            case Type.BYTE:
+                return Type.getType(Byte.class);
+            case Type.SHORT:
+                return Type.getType(Short.class);
+            case Type.INT:
+                return Type.getType(Integer.class);
+            case Type.FLOAT:
+                return Type.getType(Float.class);
+            case Type.LONG:
+                return Type.getType(Long.class);
+            case Type.DOUBLE:
+                return Type.getType(Double.class);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 加载存根类的类加载器，父加载器为服务接口的类加载器，保证存根类可以看到服务接口及其参数类型
+     */
+    private static final class StubClassLoader extends ClassLoader {
+
+        private StubClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            // 服务接口的类加载器看不到框架类时，从框架自身的类加载器加载
+            if (name.equals(RpcMethodInvoker.class.getName())) {
+                return RpcMethodInvoker.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class StubClass {
+
+        private final Constructor<?> constructor;
+
+        /**
+         * 存根类实现的方法，下标与 invokers 数组一致
+         */
+        private final List<Method> methods;
+
+        private StubClass(Constructor<?> constructor, List<Method> methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+}
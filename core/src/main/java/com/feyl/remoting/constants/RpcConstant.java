@@ -13,6 +13,11 @@ public class RpcConstant {
      */
     public static final byte[] MAGIC_NUMBER = {(byte) 'f', (byte) 'l', (byte) 'o', (byte) 'w'};
 
+    /**
+     * 魔数按大端序组成的 int 值，解码时直接与读取的 int 比较
+     */
+    public static final int MAGIC_NUMBER_INT = ('f' << 24) | ('l' << 16) | ('o' << 8) | 'w';
+
     /**
      * 默认字符编码
      */
@@ -21,9 +26,9 @@ public class RpcConstant {
     /**
      * 版本信息
      */
-    public static final byte VERSION = 1;
+    public static final byte VERSION = 2;
 
-    public static final byte TOTAL_LENGTH = 16;
+    public static final byte TOTAL_LENGTH = 20;
 
     /**
      * 消息类型
@@ -38,10 +43,34 @@ public class RpcConstant {
     //pong
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
 
+    //压缩字典，消息体为 4B 字典 id + 字典内容，由编解码器自行处理
+    public static final byte DICTIONARY_TYPE = 5;
+
+    //握手请求，连接建立后由客户端发送，没有消息体
+    public static final byte HANDSHAKE_REQUEST_TYPE = 6;
+
+    //握手响应，消息体为服务端导出的方法表
+    public static final byte HANDSHAKE_RESPONSE_TYPE = 7;
+
+    //批量消息，一个帧中携带多个请求或响应，消息体整体只压缩一次，见 RpcMessageEncoder
+    public static final byte BATCH_TYPE = 8;
+
+    //单向请求，消息体与普通请求相同，服务端不返回响应
+    public static final byte ONEWAY_REQUEST_TYPE = 9;
+
+    //流式响应的一个元素，消息体为 data 为该元素的 RpcResponse，请求ID为对应请求的ID
+    public static final byte STREAM_DATA_TYPE = 10;
+
+    //流式响应结束，消息体为表示成功或失败的 RpcResponse
+    public static final byte STREAM_END_TYPE = 11;
+
+    //客户端授予服务端的流式响应额度，消息体为 4B 元素个数，小于 0 时取消该流
+    public static final byte STREAM_CREDIT_TYPE = 12;
+
     /**
      * rpc 消息头长度
      */
-    public static final int HEAD_LENGTH = 16;
+    public static final int HEAD_LENGTH = 20;
 
     /**
      * 心跳信号消息体内容
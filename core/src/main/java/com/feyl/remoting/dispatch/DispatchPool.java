@@ -0,0 +1,64 @@
+package com.feyl.remoting.dispatch;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 执行 RPC请求的业务线程池，记录排队、执行和拒绝的请求数
+ *
+ * @author Feyl
+ */
+public abstract class DispatchPool implements Executor {
+
+    private final String name;
+
+    private final LongAdder rejected = new LongAdder();
+
+    protected DispatchPool(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 提交请求，线程池已满或已关闭时抛出 {@link RejectedExecutionException}
+     */
+    @Override
+    public void execute(Runnable command) {
+        try {
+            doExecute(command);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    protected abstract void doExecute(Runnable command);
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 等待执行的请求数
+     */
+    public abstract int getQueueDepth();
+
+    /**
+     * 正在执行的请求数
+     */
+    public abstract int getActiveCount();
+
+    public abstract int getPoolSize();
+
+    public abstract long getCompletedCount();
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - threads: %d, active: %d, queued: %d, completed: %d, rejected: %d",
+                name, getPoolSize(), getActiveCount(), getQueueDepth(), getCompletedCount(), getRejectedCount());
+    }
+}
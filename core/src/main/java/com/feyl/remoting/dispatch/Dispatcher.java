@@ -0,0 +1,159 @@
+package com.feyl.remoting.dispatch;
+
+import com.feyl.enums.DispatchModeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.utils.RpcConfigUtil;
+import com.feyl.utils.RuntimeUtil;
+import com.feyl.utils.threadpool.CustomThreadPoolConfig;
+import com.feyl.utils.threadpool.ThreadPoolUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据服务的线程模型选择执行 RPC请求的线程
+ *
+ * 如果把请求交给 DefaultEventExecutorGroup 执行，同一个连接的请求会固定在同一个线程上排队，
+ * 一个慢请求会阻塞该连接上之后的所有请求，即使其他线程空闲。因此按服务选择线程模型：
+ *  - direct：在 IO 线程中直接执行；
+ *  - shared：提交到所有服务共用的线程池，同一连接的请求可以并行执行；
+ *  - isolated：提交到服务独占的线程池；
+ *  - virtual：每个请求一个虚拟线程，所有 virtual 服务共用一个并发上限。
+ *
+ * 服务端所有服务共用一个实例（通过 {@link com.feyl.factory.SingletonFactory} 获取），
+ * 线程池通过 {@link ThreadPoolUtil} 创建，服务端关闭时随其他线程池一起关闭。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class Dispatcher {
+
+    private static final String SHARED_POOL = "rpc-dispatch-shared";
+
+    private static final String ISOLATED_POOL_PREFIX = "rpc-dispatch-";
+
+    private static final String VIRTUAL_POOL = "rpc-dispatch-virtual";
+
+    private final DispatchModeEnum defaultMode;
+
+    private final int sharedThreads;
+
+    private final int queueCapacity;
+
+    private final int virtualConcurrency;
+
+    private final int virtualQueueCapacity;
+
+    /**
+     * key：线程池名
+     * value：业务线程池
+     */
+    private final Map<String, DispatchPool> pools = new ConcurrentHashMap<>();
+
+    public Dispatcher() {
+        DispatchModeEnum mode = DispatchModeEnum.fromName(
+                RpcConfigUtil.getString(RpcConfigEnum.SERVER_DISPATCH, DispatchModeEnum.SHARED.getName()));
+        this.defaultMode = mode == null ? DispatchModeEnum.SHARED : mode;
+        this.sharedThreads = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_THREADS, RuntimeUtil.cpus() * 2));
+        this.queueCapacity = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_QUEUE_CAPACITY, Integer.MAX_VALUE);
+        this.virtualConcurrency = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_VIRTUAL_CONCURRENCY, 10000));
+        // 等待许可的虚拟线程几乎不占资源，但也不能无限堆积，没有配置时最多等待一倍并发上限的请求
+        this.virtualQueueCapacity = Math.max(0, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_QUEUE_CAPACITY, virtualConcurrency));
+    }
+
+    /**
+     * 获取执行服务请求的线程池
+     *
+     * @param rpcServiceName RPC服务名（interface name + group + version）
+     * @param dispatch       服务配置的线程模型，为空时使用默认配置
+     * @param threads        isolated 线程模型下的线程数，为 0 时使用默认线程数
+     * @return 线程池，direct 线程模型返回 null，表示在 IO 线程中直接执行
+     */
+    public Executor executor(String rpcServiceName, String dispatch, int threads) {
+        DispatchModeEnum mode = dispatch == null || dispatch.isEmpty() ? defaultMode : DispatchModeEnum.fromName(dispatch);
+        if (mode == null) {
+            log.warn("Unknown dispatch mode [{}] of [{}], use [{}]", dispatch, rpcServiceName, defaultMode.getName());
+            mode = defaultMode;
+        }
+        switch (mode) {
+            case DIRECT:
+                return null;
+            case ISOLATED:
+                return pool(ISOLATED_POOL_PREFIX + rpcServiceName, threads > 0 ? threads : sharedThreads);
+            case VIRTUAL:
+                DispatchPool virtualPool = virtualPool();
+                if (virtualPool != null) {
+                    return virtualPool;
+                }
+                log.warn("Virtual threads are not supported by this JVM, [{}] use [{}]",
+                        rpcServiceName, DispatchModeEnum.SHARED.getName());
+                return pool(SHARED_POOL, sharedThreads);
+            default:
+                return pool(SHARED_POOL, sharedThreads);
+        }
+    }
+
+    /**
+     * 默认线程模型为 virtual 时返回虚拟线程池，供 Socket 服务端执行每个连接的阻塞读写
+     *
+     * @return 虚拟线程池，默认线程模型不是 virtual 或者 JVM 不支持虚拟线程时返回 null
+     */
+    public DispatchPool defaultVirtualPool() {
+        return defaultMode == DispatchModeEnum.VIRTUAL ? virtualPool() : null;
+    }
+
+    /**
+     * 所有业务线程池，用于查看队列深度等指标
+     */
+    public Collection<DispatchPool> getPools() {
+        List<DispatchPool> list = new ArrayList<>(pools.values());
+        list.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return list;
+    }
+
+    public DispatchPool getPool(String name) {
+        return pools.get(name);
+    }
+
+    private DispatchPool pool(String name, int threads) {
+        return pools.computeIfAbsent(name, k -> {
+            CustomThreadPoolConfig config = new CustomThreadPoolConfig();
+            config.setCorePoolSize(threads);
+            config.setMaximumPoolSize(threads);
+            config.setKeepAliveTime(0);
+            config.setUnit(TimeUnit.MILLISECONDS);
+            config.setBlockingQueueCapacity(queueCapacity);
+            config.setWorkQueue(new LinkedBlockingQueue<>(queueCapacity));
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) ThreadPoolUtil.createCustomThreadPoolIfAbsent(config, name, false);
+            log.info("Created dispatch pool [{}] with [{}] threads", name, threads);
+            return new ThreadPoolDispatchPool(name, executor);
+        });
+    }
+
+    /**
+     * 所有 virtual 服务共用的虚拟线程池，JVM 不支持虚拟线程时返回 null
+     */
+    private DispatchPool virtualPool() {
+        if (!VirtualThreads.isAvailable()) {
+            return null;
+        }
+        return pools.computeIfAbsent(VIRTUAL_POOL, k -> {
+            ThreadFactory threadFactory = VirtualThreads.factory(VIRTUAL_POOL);
+            if (threadFactory == null) {
+                return null;
+            }
+            log.info("Created dispatch pool [{}] with max concurrency [{}] and queue capacity [{}]",
+                    VIRTUAL_POOL, virtualConcurrency, virtualQueueCapacity);
+            return new VirtualThreadDispatchPool(VIRTUAL_POOL, threadFactory, virtualConcurrency, virtualQueueCapacity);
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.feyl.remoting.dispatch;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 基于 {@link ThreadPoolExecutor} 的业务线程池
+ *
+ * @author Feyl
+ */
+public class ThreadPoolDispatchPool extends DispatchPool {
+
+    private final ThreadPoolExecutor executor;
+
+    public ThreadPoolDispatchPool(String name, ThreadPoolExecutor executor) {
+        super(name);
+        this.executor = executor;
+    }
+
+    @Override
+    protected void doExecute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+}
@@ -0,0 +1,99 @@
+package com.feyl.remoting.dispatch;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个请求一个虚拟线程的业务线程池
+ *
+ * 虚拟线程阻塞在数据库、网络等 IO 上时会让出载体线程，适合大量阻塞型的服务方法。
+ * 虚拟线程本身几乎没有数量限制，下游资源却有，因此用信号量限制同时执行的请求数：
+ * 提交时立即启动虚拟线程（不会阻塞 IO 线程），虚拟线程先获取许可再执行请求，等待许可的线程数即为队列深度。
+ * 已经启动还没有结束的虚拟线程数超过并发上限与队列容量之和时直接拒绝，避免下游变慢时等待的请求无限堆积。
+ * Semaphore 基于 AQS 的 park 实现，等待时不会钉住（pin）载体线程。
+ *
+ * @author Feyl
+ */
+public class VirtualThreadDispatchPool extends DispatchPool {
+
+    private final ThreadFactory threadFactory;
+
+    private final int maxConcurrency;
+
+    /**
+     * 最多同时存在的虚拟线程数，即并发上限与队列容量之和
+     */
+    private final long maxThreads;
+
+    private final Semaphore permits;
+
+    /**
+     * 已经启动还没有结束的虚拟线程数
+     */
+    private final AtomicInteger threads = new AtomicInteger();
+
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param maxConcurrency 同时执行的最大请求数
+     * @param queueCapacity  等待许可的最大请求数
+     */
+    public VirtualThreadDispatchPool(String name, ThreadFactory threadFactory, int maxConcurrency, int queueCapacity) {
+        super(name);
+        this.threadFactory = threadFactory;
+        this.maxConcurrency = maxConcurrency;
+        this.maxThreads = (long) maxConcurrency + queueCapacity;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    protected void doExecute(Runnable command) {
+        if (threads.incrementAndGet() > maxThreads) {
+            threads.decrementAndGet();
+            throw new RejectedExecutionException("Dispatch pool " + getName() + " is full");
+        }
+        try {
+            threadFactory.newThread(() -> run(command)).start();
+        } catch (RuntimeException e) {
+            threads.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable command) {
+        try {
+            permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                permits.release();
+                completed.increment();
+            }
+        } finally {
+            threads.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threads.get();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+}
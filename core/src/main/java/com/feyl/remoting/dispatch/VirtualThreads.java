@@ -0,0 +1,78 @@
+package com.feyl.remoting.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21+）的反射入口
+ *
+ * 项目以 Java 8 为编译目标，不能直接引用 {@code Thread.ofVirtual()}，这里通过反射创建虚拟线程的 ThreadFactory；
+ * 运行在低版本 JDK 上时 {@link #isAvailable()} 返回 false，调用方回退到平台线程池。
+ *
+ * <a href="https://openjdk.org/jeps/444">JEP 444: Virtual Threads</a>
+ *
+ * @author Feyl
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    /**
+     * Thread.Builder.OfVirtual#name(String, long)，不可用时为 null
+     */
+    private static final Method NAME;
+
+    /**
+     * Thread.Builder#factory()
+     */
+    private static final Method FACTORY;
+
+    private static final Method OF_VIRTUAL;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            // 通过公开的接口查找方法，实现类所在的包没有开放反射访问
+            Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 创建虚拟线程的 ThreadFactory，线程名为 prefix-0、prefix-1 ...
+     *
+     * @return ThreadFactory，当前 JDK 不支持虚拟线程时返回 null
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isAvailable()) {
+            return null;
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Create virtual thread factory failed", e);
+            return null;
+        }
+    }
+}
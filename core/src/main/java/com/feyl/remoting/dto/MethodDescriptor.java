@@ -0,0 +1,66 @@
+package com.feyl.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * 服务端导出的一个方法及其方法ID，在连接握手时发送给客户端
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+@ToString
+public class MethodDescriptor implements Serializable {
+
+    private static final long serialVersionUID = -3164843318498237725L;
+
+    /**
+     * 方法ID，在服务端内唯一，从 1 开始
+     */
+    private int methodId;
+
+    /**
+     * RPC服务名（interface name + group + version）
+     */
+    private String rpcServiceName;
+
+    /**
+     * 方法名
+     */
+    private String methodName;
+
+    /**
+     * 参数类型的类名
+     */
+    private String[] paramTypes;
+
+    /**
+     * 方法签名：rpcServiceName#methodName(paramType,...)，用于按服务和方法查找方法
+     */
+    public static String signature(String rpcServiceName, String methodName, String[] paramTypes) {
+        return rpcServiceName + '#' + methodName + '(' + String.join(",", paramTypes) + ')';
+    }
+
+    /**
+     * 请求调用的方法的签名
+     */
+    public static String signature(RpcRequest rpcRequest) {
+        if (rpcRequest.getSignature() != null) {
+            return rpcRequest.getSignature();
+        }
+        Class<?>[] paramTypes = rpcRequest.getParamTypes();
+        String[] paramTypeNames = new String[paramTypes == null ? 0 : paramTypes.length];
+        for (int i = 0; i < paramTypeNames.length; i++) {
+            paramTypeNames[i] = paramTypes[i].getName();
+        }
+        return signature(rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), paramTypeNames);
+    }
+
+    public String signature() {
+        return signature(rpcServiceName, methodName, paramTypes);
+    }
+}
@@ -0,0 +1,56 @@
+package com.feyl.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 服务端导出的方法表，连接建立后服务端在握手响应中发送给客户端
+ *
+ * 客户端据此把 RPC请求中的 interface name + group + version、方法名、参数类型换成一个整数方法ID，
+ * 请求只需要携带方法ID和实际参数，服务端按方法ID直接找到要调用的方法。
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString(of = "methods")
+public class MethodTable implements Serializable {
+
+    private static final long serialVersionUID = 4621503796212536710L;
+
+    private List<MethodDescriptor> methods;
+
+    /**
+     * key：方法签名
+     * value：方法ID
+     * 第一次查找时构建，只在收到该方法表的 channel 的 EventLoop 中访问
+     */
+    private transient Map<String, Integer> methodIds;
+
+    public MethodTable(List<MethodDescriptor> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * 查找请求调用的方法的方法ID
+     *
+     * @param rpcRequest 客户端请求
+     * @return 方法ID，服务端没有导出该方法时返回 0
+     */
+    public int getMethodId(RpcRequest rpcRequest) {
+        if (methodIds == null) {
+            Map<String, Integer> ids = new HashMap<>(methods.size() * 2);
+            for (MethodDescriptor method : methods) {
+                ids.put(method.signature(), method.getMethodId());
+            }
+            methodIds = ids;
+        }
+        Integer methodId = methodIds.get(MethodDescriptor.signature(rpcRequest));
+        return methodId == null ? 0 : methodId;
+    }
+}
@@ -0,0 +1,72 @@
+package com.feyl.remoting.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 服务端调用失败的原因，随失败响应返回给客户端
+ *
+ * 只传输异常类名、异常信息和（可选的）堆栈文本，不直接序列化异常对象：
+ * 客户端不一定能加载服务端的异常类，各序列化方式对 Throwable 的支持也不一致。
+ *
+ * @author Feyl
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class RpcError implements Serializable {
+
+    private static final long serialVersionUID = -3263185839231745326L;
+
+    /**
+     * 服务端抛出的异常类名
+     */
+    private String exceptionClass;
+
+    /**
+     * 异常信息
+     */
+    private String message;
+
+    /**
+     * 服务端异常堆栈，未开启时为 null
+     */
+    private String stackTrace;
+
+    /**
+     * 根据服务端异常创建，去掉 CompletionException 等包装异常
+     *
+     * @param cause           服务端异常
+     * @param withStackTrace 是否携带异常堆栈
+     */
+    public static RpcError of(Throwable cause, boolean withStackTrace) {
+        Throwable e = unwrap(cause);
+        RpcError error = new RpcError();
+        error.setExceptionClass(e.getClass().getName());
+        error.setMessage(e.getMessage());
+        if (withStackTrace) {
+            StringWriter writer = new StringWriter();
+            e.printStackTrace(new PrintWriter(writer));
+            error.setStackTrace(writer.toString());
+        }
+        return error;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException
+                || e instanceof InvocationTargetException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -29,9 +29,9 @@ public class RpcMessage {
     private byte compress;
 
     /**
-     * 请求 id
+     * 请求 id，写在消息头中，用于关联请求与响应
      */
-    private int requestId;
+    private long requestId;
 
     /**
      * 请求 数据
@@ -1,5 +1,6 @@
 package com.feyl.remoting.dto;
 
+import com.feyl.remoting.stream.RpcStreamObserver;
 import lombok.*;
 
 import java.io.Serializable;
@@ -19,9 +20,16 @@ public class RpcRequest implements Serializable {
     private static final long serialVersionUID = 1905122041950251207L;
 
     /**
-     * RPC 请求ID
+     * RPC 请求ID，通过消息头传输，不参与序列化
      */
-    private String requestId;
+    @Setter
+    private transient long requestId;
+
+    /**
+     * 握手时服务端分配的方法ID，不为 0 时服务端按方法ID找到调用的方法，
+     * 接口名、方法名、参数类型、group、version 都不再发送
+     */
+    private int methodId;
 
     /**
      * 调用的接口名
@@ -53,6 +61,37 @@ public class RpcRequest implements Serializable {
      */
     private String version;
 
+    /**
+     * 流式调用中客户端的接收窗口（消息个数），服务端发送方向的初始额度按此设置，两端的窗口配置不同时也不会停顿；
+     * 为 0 时使用服务端配置的窗口
+     */
+    @Setter
+    private int streamWindow;
+
+    /**
+     * 调用超时时间（毫秒），只在客户端使用，不参与序列化；为 0 时使用默认超时时间
+     */
+    private transient long timeout;
+
+    /**
+     * 调用方法的签名，只在客户端使用，不参与序列化；由客户端代理预先计算，握手后查找方法ID时不必再拼接
+     */
+    private transient String signature;
+
+    /**
+     * 是否为单向调用，只在客户端使用，不参与序列化；单向调用以 ONEWAY 消息类型发送，服务端不返回响应
+     */
+    private transient boolean oneway;
+
+    /**
+     * 是否为流式调用，只在客户端使用，不参与序列化；服务端根据方法返回值决定是否以流式响应返回
+     */
+    private transient boolean stream;
+
+    /**
+     * 双向流式调用中接收服务端消息的 observer，只在客户端使用，不参与序列化；不为 null 时为双向流式调用
+     */
+    private transient RpcStreamObserver<Object> streamObserver;
 
     /**
      * 获取远程服务名
@@ -19,9 +19,9 @@ public class RpcResponse<T> implements Serializable {
     private static final long serialVersionUID = 715745410605631233L;
 
     /**
-     * RPC 请求ID
+     * RPC 请求ID，通过消息头传输，不参与序列化
      */
-    private String requestId;
+    private transient long requestId;
 
     /**
      * 调用的响应状态码
@@ -38,7 +38,12 @@ public class RpcResponse<T> implements Serializable {
      */
     private T data;
 
-    public static <T> RpcResponse<T> success(String requestId, T data) {
+    /**
+     * 调用失败的原因，成功时为 null
+     */
+    private RpcError error;
+
+    public static <T> RpcResponse<T> success(long requestId, T data) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setCode(RpcResponseCodeEnum.SUCCESS.getCode());
         response.setMessage(RpcResponseCodeEnum.SUCCESS.getMessage());
@@ -55,4 +60,11 @@ public class RpcResponse<T> implements Serializable {
         response.setMessage(rpcResponseCodeEnum.getMessage());
         return response;
     }
+
+    public static <T> RpcResponse<T> fail(long requestId, RpcResponseCodeEnum rpcResponseCodeEnum, RpcError error) {
+        RpcResponse<T> response = fail(rpcResponseCodeEnum);
+        response.setRequestId(requestId);
+        response.setError(error);
+        return response;
+    }
 }
@@ -1,13 +1,15 @@
 package com.feyl.remoting.handler;
 
 import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.ServiceMethod;
 import com.feyl.provider.ServiceProvider;
 import com.feyl.provider.impl.ZkServiceProviderImpl;
 import com.feyl.remoting.dto.RpcRequest;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * RPC 请求处理器
@@ -24,30 +26,76 @@ public class RpcRequestHandler {
 
     /**
      * 处理 rpcRequest：调用相应的方法，然后返回该方法
+     * 调用的方法及其调用器在添加服务时已经准备好，这里只需按方法ID或方法签名查找
      */
     public Object handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        return invokeMethod(rpcRequest, service);
+        return handle(getServiceMethod(rpcRequest), rpcRequest);
     }
 
     /**
-     * 获取方法执行结果
+     * 查找请求调用的服务方法，找不到时抛出 {@link com.feyl.exception.RpcException}
+     */
+    public ServiceMethod getServiceMethod(RpcRequest rpcRequest) {
+        return serviceProvider.getServiceMethod(rpcRequest);
+    }
+
+    /**
+     * 获取方法执行结果，服务方法返回 CompletableFuture 时阻塞等待其完成
      *
+     * @param serviceMethod 服务方法
      * @param rpcRequest 客户端请求
-     * @param service 服务对象
      * @return 方法执行的结果
      */
-    private Object invokeMethod(RpcRequest rpcRequest, Object service) {
-        Object result;
+    public Object handle(ServiceMethod serviceMethod, RpcRequest rpcRequest) {
         try {
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            throw new RuntimeException(e);
+            return handleAsync(serviceMethod, rpcRequest).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            // 受检异常保留 CompletionException 包装，创建失败响应时再取出原始异常
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
         }
-        return result;
     }
 
+    /**
+     * 异步获取方法执行结果
+     *
+     * 服务方法返回 CompletableFuture（或 CompletionStage）时直接返回该 future，不占用线程等待其完成，
+     * 调用方在 future 完成时再写回响应；其他方法的结果或抛出的异常包装为已完成的 future。
+     * 被 {@link com.feyl.annotation.RpcBatchable} 标注的方法交给合并器，在批量调用完成后得到结果。
+     *
+     * @param serviceMethod 服务方法
+     * @param rpcRequest 客户端请求
+     * @return 方法执行结果的 future，服务方法抛出异常或 future 异常完成时以该异常完成
+     */
+    public CompletableFuture<Object> handleAsync(ServiceMethod serviceMethod, RpcRequest rpcRequest) {
+        if (serviceMethod.getMerger() != null) {
+            // 与其他并发请求合并为一次批量调用
+            Object[] parameters = rpcRequest.getParameters();
+            return serviceMethod.getMerger().submit(parameters == null ? null : parameters[0]).thenApply(value -> {
+                log(serviceMethod);
+                return value;
+            });
+        }
+        Object result;
+        try {
+            result = serviceMethod.invoke(rpcRequest.getParameters());
+        } catch (Throwable e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (result instanceof CompletionStage) {
+            return ((CompletionStage<?>) result).toCompletableFuture().thenApply(value -> {
+                log(serviceMethod);
+                return value;
+            });
+        }
+        log(serviceMethod);
+        return CompletableFuture.completedFuture(result);
+    }
 
+    private static void log(ServiceMethod serviceMethod) {
+        log.info("service:[{}] successful invoke method:[{}]", serviceMethod.getDescriptor().getRpcServiceName(),
+                serviceMethod.getDescriptor().getMethodName());
+    }
 }
@@ -0,0 +1,35 @@
+package com.feyl.remoting.stream;
+
+/**
+ * 双向流式调用中一个方向的消息接收者
+ *
+ * 服务接口中形如 {@code RpcStreamObserver<Req> ingest(RpcStreamObserver<Resp> responses)} 的方法为双向流式方法：
+ * 客户端调用时传入接收服务端消息的 observer，返回向服务端发送消息的 observer；
+ * 服务端实现收到向客户端发送消息的 observer，返回接收客户端消息的 observer。
+ * 两个方向复用同一个连接和同一个请求ID，各自按 rpc.stream.window 做基于额度的流控，可以分别结束（半关闭）。
+ *
+ * 发送方向：{@link #onNext} 在对端没有额度时等待，客户端最长等待调用的超时时间，服务端最长等待 rpc.server.stream.timeout；
+ * 在 IO 线程中调用时不等待，消息先缓存在本端，收到额度后按顺序发出。
+ * 接收方向：回调按对端发送的顺序依次执行，服务端在服务方法的业务线程池中执行，客户端在 IO 线程中执行，
+ * 回调返回后才向对端归还额度，回调慢时对端会被限速。
+ *
+ * @param <T> 消息类型
+ * @author Feyl
+ */
+public interface RpcStreamObserver<T> {
+
+    /**
+     * 收到（或发送）一条消息
+     */
+    void onNext(T value);
+
+    /**
+     * 流因为异常结束，之后不会再有任何回调；发送方向调用时两个方向同时结束
+     */
+    void onError(Throwable t);
+
+    /**
+     * 该方向的消息已经全部发送，另一个方向不受影响
+     */
+    void onCompleted();
+}
@@ -3,6 +3,9 @@ package com.feyl.remoting.transport;
 import com.feyl.extension.SPI;
 import com.feyl.remoting.dto.RpcRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 远程调用接口
  *
@@ -19,4 +22,18 @@ public interface RpcRequestTransport {
      */
     Object sendRpcRequest(RpcRequest rpcRequest);
 
+    /**
+     * 批量发送远程调用请求，默认逐个发送；支持批量的传输方式把发往同一服务地址的请求合并发送
+     *
+     * @param rpcRequests 请求体
+     * @return 每个请求的响应数据，与请求一一对应
+     */
+    default List<Object> sendRpcRequests(List<RpcRequest> rpcRequests) {
+        List<Object> results = new ArrayList<>(rpcRequests.size());
+        for (RpcRequest rpcRequest : rpcRequests) {
+            results.add(sendRpcRequest(rpcRequest));
+        }
+        return results;
+    }
+
 }
@@ -0,0 +1,469 @@
+package com.feyl.remoting.transport.netty;
+
+import com.feyl.compress.CompressPolicy;
+import com.feyl.enums.CompressTypeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.exception.RpcException;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.stream.RpcStreamObserver;
+import com.feyl.utils.RpcConfigUtil;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次双向流式调用在一端的状态，客户端和服务端共用
+ *
+ * 两个方向复用请求所在的连接，帧的请求ID即流ID：STREAM_DATA 为一条消息，STREAM_END 结束一个方向（失败时结束两个方向），
+ * STREAM_CREDIT 为接收方归还的额度。发送方向的初始额度为对端的接收窗口：客户端在请求中告知服务端，
+ * 服务端在第一个 STREAM_CREDIT 帧中告知客户端，两端的 rpc.stream.window 不同时也不会停顿；每发送一条消息消耗一个额度。
+ * 在其他线程中发送时没有额度则等待，最长等待 timeoutMillis；IO 线程中不能等待，没有额度的消息先缓存在本端，
+ * 收到额度后按顺序发出，发送方向的结束帧排在缓存的消息之后，任何情况下都不会超出对端的窗口。
+ * 接收方向的回调通过串行队列依次执行，每执行完半个窗口的回调归还一次额度。
+ *
+ * 两个方向都结束后从所在连接的登记中移除。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class BidiStream {
+
+    /**
+     * 接收窗口，告知对端作为对端发送方向的初始额度
+     */
+    public static final int WINDOW = RpcConfigUtil.getInt(RpcConfigEnum.STREAM_WINDOW, 64);
+
+    private static final int CREDIT_BATCH = Math.max(1, WINDOW / 2);
+
+    /**
+     * 缓存中代表 null 消息的对象
+     */
+    private static final Object NULL = new Object();
+
+    private final long streamId;
+
+    /**
+     * 在 IO 线程以外发送消息时等待额度的超时时间（毫秒），为 0 时一直等待到有额度或流结束
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 失败结束时是否携带异常堆栈
+     */
+    private final boolean errorStackTrace;
+
+    /**
+     * 对端还可以接收的消息个数
+     */
+    private final Semaphore credit;
+
+    /**
+     * 流所在的 channel，客户端在请求写出时绑定
+     */
+    private final CompletableFuture<Channel> channel = new CompletableFuture<>();
+
+    private final RpcStreamObserver<Object> outbound = new Outbound();
+
+    /**
+     * IO 线程中发送的、还没有额度的消息，收到额度后在 IO 线程中按顺序发出
+     */
+    private final Queue<Object> unsent = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 等待执行的接收方向回调
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final AtomicBoolean removed = new AtomicBoolean();
+
+    private volatile Executor executor;
+
+    private volatile RpcStreamObserver<Object> inbound;
+
+    /**
+     * 两个方向都结束后从所在连接的登记中移除，在 channel 的 EventLoop 中执行
+     */
+    private volatile Runnable remover;
+
+    private volatile boolean outboundClosed;
+
+    /**
+     * 发送方向的结束帧已经写出（或因失败不再需要写出），之后才能从所在连接的登记中移除
+     */
+    private volatile boolean outboundEnded;
+
+    /**
+     * 发送方向已经结束，但还有缓存的消息没有发出，结束帧在缓存发完后写出；只在 IO 线程中访问
+     */
+    private boolean endPending;
+
+    private volatile boolean inboundClosed;
+
+    /**
+     * 已经执行完但还没有归还额度的回调个数，只在串行队列中访问
+     */
+    private int received;
+
+    /**
+     * @param sendWindow 对端的接收窗口，即发送方向的初始额度；为 0 时等待对端通过 STREAM_CREDIT 帧告知
+     */
+    public BidiStream(long streamId, long timeoutMillis, boolean errorStackTrace, int sendWindow) {
+        this.streamId = streamId;
+        this.timeoutMillis = timeoutMillis;
+        this.errorStackTrace = errorStackTrace;
+        this.credit = new Semaphore(Math.max(0, sendWindow));
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * 以一个 STREAM_CREDIT 帧把接收窗口告知对端，服务端在绑定 channel 后调用
+     */
+    public void announceWindow() {
+        grant(WINDOW);
+    }
+
+    /**
+     * 绑定流所在的 channel
+     *
+     * @param executor 执行接收方向回调的线程池，为 null 时在 channel 的 IO 线程中执行
+     * @param remover  两个方向都结束后从所在连接的登记中移除
+     */
+    public void attach(Channel ch, Executor executor, Runnable remover) {
+        this.executor = executor == null ? ch.eventLoop() : executor;
+        this.remover = remover;
+        channel.complete(ch);
+        drain();
+    }
+
+    /**
+     * 设置接收对端消息的 observer，之前到达的消息在此之后依次回调
+     */
+    public void start(RpcStreamObserver<Object> inbound) {
+        this.inbound = inbound;
+        drain();
+    }
+
+    /**
+     * 向对端发送消息的 observer
+     */
+    public RpcStreamObserver<Object> outbound() {
+        return outbound;
+    }
+
+    /**
+     * 收到对端的一条消息
+     */
+    public void onData(Object value) {
+        deliver(() -> {
+            inbound.onNext(value);
+            if (++received >= CREDIT_BATCH) {
+                grant(received);
+                received = 0;
+            }
+        });
+    }
+
+    /**
+     * 对端结束了它的发送方向；失败结束时两个方向都结束
+     */
+    public void onEnd(RpcResponse<Object> rpcResponse) {
+        if (rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
+            deliver(() -> {
+                inboundClosed = true;
+                inbound.onCompleted();
+                removeIfDone();
+            });
+        } else {
+            fail(toException(rpcResponse));
+        }
+    }
+
+    /**
+     * 收到对端归还的额度（在 IO 线程中调用），先发出缓存的消息；额度小于 0 表示对端取消了该流
+     */
+    public void onCredit(int n) {
+        if (n < 0) {
+            fail(new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "stream cancelled:" + streamId));
+        } else {
+            credit.release(n);
+            flushUnsent();
+        }
+    }
+
+    /**
+     * 连接失败、连接断开或对端失败，两个方向都结束，接收方向回调 onError
+     */
+    public void fail(Throwable cause) {
+        channel.completeExceptionally(cause);
+        closeOutbound();
+        unsent.clear();
+        outboundEnded = true;
+        if (executor == null) {
+            executor = Runnable::run;
+        }
+        deliver(() -> {
+            inboundClosed = true;
+            inbound.onError(cause);
+            removeIfDone();
+        });
+    }
+
+    private void deliver(Runnable task) {
+        tasks.add(() -> {
+            if (inboundClosed) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("stream [{}] observer failed: ", streamId, e);
+                // 接收方处理失败时通知对端，两个方向都结束
+                outbound.onError(e);
+            }
+        });
+        drain();
+    }
+
+    /**
+     * 在 executor 中依次执行回调，同一时刻只有一个线程在执行
+     */
+    private void drain() {
+        Executor e = executor;
+        if (e == null || inbound == null || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            e.execute(this::runTasks);
+        } catch (RejectedExecutionException ex) {
+            log.error("stream [{}] rejected", streamId);
+            draining.set(false);
+            tasks.clear();
+            outbound.onError(ex);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+        draining.set(false);
+        // 退出前到达的回调因 draining 被忽略，重新检查
+        if (!tasks.isEmpty()) {
+            drain();
+        }
+    }
+
+    /**
+     * 流失败时结束发送方向，唤醒等待额度的发送方；正常结束时缓存的消息仍然需要额度，不能唤醒
+     */
+    private void closeOutbound() {
+        outboundClosed = true;
+        credit.release(WINDOW);
+    }
+
+    /**
+     * 在 IO 线程中发出有额度的缓存消息，缓存发完后写出被推迟的结束帧
+     */
+    private void flushUnsent() {
+        Channel ch = attached();
+        if (ch == null) {
+            return;
+        }
+        while (!unsent.isEmpty() && !outboundEnded && credit.tryAcquire()) {
+            Object value = unsent.poll();
+            write(ch, RpcConstant.STREAM_DATA_TYPE, RpcResponse.success(streamId, value == NULL ? null : value));
+        }
+        if (endPending && unsent.isEmpty()) {
+            endPending = false;
+            end(ch);
+        }
+    }
+
+    /**
+     * 写出发送方向的结束帧，有缓存的消息时推迟到缓存发完后写出；在 IO 线程中调用
+     */
+    private void endOutbound(Channel ch) {
+        if (unsent.isEmpty()) {
+            end(ch);
+        } else {
+            endPending = true;
+        }
+    }
+
+    private void end(Channel ch) {
+        if (outboundEnded) {
+            return;
+        }
+        outboundEnded = true;
+        write(ch, RpcConstant.STREAM_END_TYPE, RpcResponse.success(streamId, null));
+        removeIfDone();
+    }
+
+    private void removeIfDone() {
+        if (!outboundEnded || !inboundClosed || !removed.compareAndSet(false, true)) {
+            return;
+        }
+        Channel ch = attached();
+        Runnable r = remover;
+        if (ch != null && r != null) {
+            ch.eventLoop().execute(r);
+        }
+    }
+
+    private void grant(int n) {
+        Channel ch = attached();
+        if (ch == null || inboundClosed) {
+            return;
+        }
+        RpcMessage rpcMsg = new RpcMessage();
+        rpcMsg.setRequestId(streamId);
+        rpcMsg.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMsg.setCompress(CompressTypeEnum.NONE.getCode());
+        rpcMsg.setMessageType(RpcConstant.STREAM_CREDIT_TYPE);
+        rpcMsg.setData(n);
+        ch.writeAndFlush(rpcMsg);
+    }
+
+    private void write(Channel ch, byte messageType, RpcResponse<Object> rpcResponse) {
+        RpcMessage rpcMsg = new RpcMessage();
+        rpcMsg.setRequestId(streamId);
+        rpcMsg.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMsg.setCompress(CompressPolicy.configuredCompressType());
+        rpcMsg.setMessageType(messageType);
+        rpcMsg.setData(rpcResponse);
+        ch.writeAndFlush(rpcMsg);
+    }
+
+    /**
+     * 已经绑定的 channel，没有绑定或连接失败时返回 null
+     */
+    private Channel attached() {
+        return channel.isDone() && !channel.isCompletedExceptionally() ? channel.join() : null;
+    }
+
+    /**
+     * 获取流所在的 channel，客户端在连接建立前发送消息时等待连接建立
+     */
+    private Channel awaitChannel() {
+        try {
+            return timeoutMillis > 0 ? channel.get(timeoutMillis, TimeUnit.MILLISECONDS) : channel.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("stream interrupted: " + streamId, e);
+        } catch (ExecutionException e) {
+            throw new RpcException("stream failed: " + streamId, e.getCause());
+        } catch (TimeoutException e) {
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, "stream:" + streamId);
+        }
+    }
+
+    /**
+     * 在 IO 线程以外消耗一个额度，没有额度时等待
+     */
+    private void acquire() {
+        try {
+            if (timeoutMillis > 0) {
+                if (!credit.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, "stream:" + streamId);
+                }
+            } else {
+                credit.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("stream interrupted: " + streamId, e);
+        }
+    }
+
+    private static RuntimeException toException(RpcResponse<Object> rpcResponse) {
+        RpcError error = rpcResponse.getError();
+        if (error != null) {
+            return new RpcRemoteException(rpcResponse.getCode(), error.getExceptionClass(), error.getMessage(),
+                    error.getStackTrace());
+        }
+        return new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "stream:" + rpcResponse.getRequestId());
+    }
+
+    /**
+     * 发送方向：消息写为 STREAM_DATA 帧，结束时写出 STREAM_END 帧
+     */
+    private final class Outbound implements RpcStreamObserver<Object> {
+
+        @Override
+        public void onNext(Object value) {
+            if (outboundClosed) {
+                throw new IllegalStateException("stream already closed: " + streamId);
+            }
+            Channel ch = awaitChannel();
+            if (ch.eventLoop().inEventLoop()) {
+                // IO 线程中不能等待额度，没有额度或前面还有缓存的消息时先缓存，保持发送顺序
+                if (unsent.isEmpty() && credit.tryAcquire()) {
+                    write(ch, RpcConstant.STREAM_DATA_TYPE, RpcResponse.success(streamId, value));
+                } else {
+                    unsent.add(value == null ? NULL : value);
+                }
+                return;
+            }
+            acquire();
+            if (outboundClosed) {
+                throw new IllegalStateException("stream already closed: " + streamId);
+            }
+            write(ch, RpcConstant.STREAM_DATA_TYPE, RpcResponse.success(streamId, value));
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (outboundClosed) {
+                return;
+            }
+            closeOutbound();
+            unsent.clear();
+            outboundEnded = true;
+            inboundClosed = true;
+            Channel ch = attached();
+            if (ch != null) {
+                write(ch, RpcConstant.STREAM_END_TYPE,
+                        RpcResponse.fail(streamId, RpcResponseCodeEnum.FAIL, RpcError.of(t, errorStackTrace)));
+            }
+            removeIfDone();
+        }
+
+        @Override
+        public void onCompleted() {
+            if (outboundClosed) {
+                return;
+            }
+            Channel ch = awaitChannel();
+            // 正常结束不唤醒等待额度的发送方，缓存的消息发完后才写出结束帧
+            outboundClosed = true;
+            if (ch.eventLoop().inEventLoop()) {
+                endOutbound(ch);
+            } else {
+                ch.eventLoop().execute(() -> endOutbound(ch));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.utils.RpcConfigUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并客户端请求：时间窗口内写到同一连接（同一服务提供者）的请求合并为一个 BATCH 帧
+ *
+ * 扇出调用时同一时刻会向同一台服务器发出大量很小的请求，每个请求单独一个帧，各自有消息头、压缩和 flush。
+ * 该处理器放在 {@link NettyRpcClientHandler} 与编解码器之间：第一个请求到达后等待 rpc.client.batch.window.micros 微秒，
+ * 窗口内的请求（最多 rpc.client.batch.max.size 个）合并后一起写出并 flush，窗口内只有一个请求时按原样写出。
+ * 等待合并的请求还没有交给下游，flush 照常向下传递，不影响心跳等其他消息。
+ * 每个请求的写出结果随 BATCH 帧的写出结果一起通知。
+ *
+ * 请求已经在 {@link NettyRpcClientHandler} 中登记，响应按请求ID对应，合并不影响响应的处理。
+ * 所有方法都在 channel 的 EventLoop 中执行，因此无需同步。
+ *
+ * @author Feyl
+ */
+public class CallCoalescingHandler extends ChannelOutboundHandlerAdapter {
+
+    private static final long WINDOW_MICROS = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_BATCH_WINDOW_MICROS, 0);
+
+    private static final int MAX_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_BATCH_MAX_SIZE, 64);
+
+    private final long windowMicros;
+
+    private final int maxSize;
+
+    /**
+     * 窗口内等待合并的请求及其写出结果，下标一一对应
+     */
+    private final List<RpcMessage> pending = new ArrayList<>();
+
+    private final List<ChannelPromise> promises = new ArrayList<>();
+
+    private ChannelHandlerContext ctx;
+
+    private ScheduledFuture<?> scheduledWrite;
+
+    public CallCoalescingHandler() {
+        this(WINDOW_MICROS, MAX_SIZE);
+    }
+
+    CallCoalescingHandler(long windowMicros, int maxSize) {
+        this.windowMicros = windowMicros;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 是否配置了合并请求（rpc.client.batch.window.micros 大于 0）
+     */
+    public static boolean isEnabled() {
+        return WINDOW_MICROS > 0;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof RpcMessage) || ((RpcMessage) msg).getMessageType() != RpcConstant.REQUEST_TYPE) {
+            ctx.write(msg, promise);
+            return;
+        }
+        pending.add((RpcMessage) msg);
+        promises.add(promise);
+        if (pending.size() >= maxSize) {
+            writePending();
+        } else if (scheduledWrite == null) {
+            scheduledWrite = ctx.executor().schedule(() -> {
+                scheduledWrite = null;
+                writePending();
+                ctx.flush();
+            }, windowMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushPending();
+    }
+
+    private void flushPending() {
+        if (!pending.isEmpty()) {
+            writePending();
+            ctx.flush();
+        }
+    }
+
+    private void writePending() {
+        if (scheduledWrite != null) {
+            scheduledWrite.cancel(false);
+            scheduledWrite = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (pending.size() == 1) {
+            ctx.write(pending.get(0), promises.get(0));
+        } else {
+            RpcMessage first = pending.get(0);
+            RpcMessage batch = RpcMessage.builder()
+                    .messageType(RpcConstant.BATCH_TYPE)
+                    .codec(first.getCodec())
+                    .compress(first.getCompress())
+                    .data(new ArrayList<>(pending)).build();
+            ChannelPromise batchPromise = ctx.newPromise();
+            batchPromise.addListener(new PromiseNotifier<Void, ChannelFuture>(promises.toArray(new ChannelPromise[0])));
+            ctx.write(batch, batchPromise);
+        }
+        pending.clear();
+        promises.clear();
+    }
+}
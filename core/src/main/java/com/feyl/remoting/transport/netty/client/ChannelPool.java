@@ -0,0 +1,337 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.enums.ChannelSelectEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
+import com.feyl.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 到同一个服务地址的连接池
+ *
+ *  - 连接按需建立：池为空时建立第一个连接，选中的连接上还有未完成的请求且连接数未达到上限时，在后台再建立一个连接；
+ *  - 同一时刻最多只有一个连接正在建立（single-flight），并发的调用方共享同一个建立连接的 future；
+ *  - 连接关闭后自动从池中移除，长时间没有请求的连接由 {@link #reapIdle(long, long)} 关闭。
+ *
+ * 连接状态：
+ * <pre>
+ *   IDLE --acquire--> CONNECTING --成功--> CONNECTED --所有连接断开--> CONNECTING（后台立即重连）
+ *                         |                                  ^
+ *                        失败                                 |
+ *                         v                                  |
+ *                      BACKOFF --等待时间到，后台重连--> CONNECTING
+ * </pre>
+ * BACKOFF 状态下获取连接立即失败，不阻塞调用方；每次连续失败等待时间翻倍，直到 maxBackoff。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class ChannelPool {
+
+    private static final AttributeKey<PooledChannel> POOLED_CHANNEL = AttributeKey.valueOf("pooledChannel");
+
+    enum State {
+        IDLE, CONNECTING, CONNECTED, BACKOFF, CLOSED
+    }
+
+    private final InetSocketAddress address;
+
+    private final int maxConnections;
+
+    private final ChannelSelectEnum channelSelect;
+
+    private final Function<InetSocketAddress, CompletableFuture<Channel>> connector;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final List<PooledChannel> channels = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private State state = State.IDLE;
+
+    /**
+     * 正在建立的连接，没有时为 null
+     */
+    private CompletableFuture<Channel> connecting;
+
+    /**
+     * 下一次连接失败后的等待时间
+     */
+    private long backoffMillis;
+
+    /**
+     * 最近一次连接失败的原因，BACKOFF 状态下用于快速失败
+     */
+    private Throwable lastFailure;
+
+    private ScheduledFuture<?> reconnect;
+
+    private volatile long lastAcquireNanos = System.nanoTime();
+
+    public ChannelPool(InetSocketAddress address, int maxConnections, ChannelSelectEnum channelSelect,
+                       Function<InetSocketAddress, CompletableFuture<Channel>> connector,
+                       ScheduledExecutorService scheduler, long initialBackoffMillis, long maxBackoffMillis) {
+        this.address = address;
+        this.maxConnections = maxConnections;
+        this.channelSelect = channelSelect;
+        this.connector = connector;
+        this.scheduler = scheduler;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * 从池中获取一个可用的连接，池中没有可用连接时建立新连接；处于重连等待中时返回以异常完成的 future
+     *
+     * @return 可用的连接，连接池已经被回收时返回 null
+     */
+    public CompletableFuture<Channel> acquire() {
+        lastAcquireNanos = System.nanoTime();
+        PooledChannel selected = select();
+        if (selected == null) {
+            return connectOrFail();
+        }
+        if (selected.pending.get() > 0 && channels.size() < maxConnections) {
+            grow();
+        }
+        return CompletableFuture.completedFuture(selected.channel);
+    }
+
+    /**
+     * 发送请求时调用，记录连接上未完成的请求数
+     */
+    public static void incrementPending(Channel channel) {
+        PooledChannel pooledChannel = channel.attr(POOLED_CHANNEL).get();
+        if (pooledChannel != null) {
+            pooledChannel.pending.incrementAndGet();
+            pooledChannel.lastUsedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 收到响应时调用
+     */
+    public static void decrementPending(Channel channel) {
+        PooledChannel pooledChannel = channel.attr(POOLED_CHANNEL).get();
+        if (pooledChannel != null) {
+            pooledChannel.pending.decrementAndGet();
+            pooledChannel.lastUsedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 关闭空闲超过指定时间且没有未完成请求的连接
+     *
+     * @return 池中已经没有连接且长时间没有被使用时返回 true，此时连接池被回收，不能再使用
+     */
+    public boolean reapIdle(long nowNanos, long idleNanos) {
+        for (PooledChannel pooledChannel : channels) {
+            if (pooledChannel.pending.get() <= 0 && nowNanos - pooledChannel.lastUsedNanos > idleNanos) {
+                log.info("Close idle channel [{}]", pooledChannel.channel);
+                channels.remove(pooledChannel);
+                pooledChannel.channel.close();
+            }
+        }
+        synchronized (this) {
+            if (channels.isEmpty() && connecting == null && nowNanos - lastAcquireNanos > idleNanos) {
+                closeInternal();
+                return true;
+            }
+            if (channels.isEmpty() && state == State.CONNECTED) {
+                state = State.IDLE;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 关闭池中的所有连接，并停止重连
+     */
+    public void close() {
+        synchronized (this) {
+            closeInternal();
+        }
+        for (PooledChannel pooledChannel : channels) {
+            pooledChannel.channel.close();
+        }
+        channels.clear();
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private PooledChannel select() {
+        int size = channels.size();
+        if (size == 0) {
+            return null;
+        }
+        if (channelSelect == ChannelSelectEnum.LEAST_PENDING) {
+            PooledChannel selected = null;
+            for (PooledChannel pooledChannel : channels) {
+                if (pooledChannel.channel.isActive()
+                        && (selected == null || pooledChannel.pending.get() < selected.pending.get())) {
+                    selected = pooledChannel;
+                }
+            }
+            return selected;
+        }
+        int start = next.getAndIncrement();
+        for (int i = 0; i < size; i++) {
+            try {
+                PooledChannel pooledChannel = channels.get(Math.floorMod(start + i, size));
+                if (pooledChannel.channel.isActive()) {
+                    return pooledChannel;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // 连接在遍历过程中被移除
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private synchronized CompletableFuture<Channel> connectOrFail() {
+        switch (state) {
+            case CLOSED:
+                return null;
+            case BACKOFF:
+                CompletableFuture<Channel> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new RpcException(
+                        RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + address, lastFailure));
+                return failed;
+            default:
+                return connect();
+        }
+    }
+
+    /**
+     * 在后台增加一个连接，重连等待中或已有连接正在建立时不做任何事
+     */
+    private synchronized void grow() {
+        if (state == State.CONNECTED && connecting == null && reconnect == null) {
+            connect();
+        }
+    }
+
+    private CompletableFuture<Channel> connect() {
+        if (connecting != null) {
+            return connecting;
+        }
+        if (channels.isEmpty()) {
+            state = State.CONNECTING;
+        }
+        CompletableFuture<Channel> future = connector.apply(address).thenApply(this::add);
+        connecting = future;
+        // 连接可能已经完成，回调会立即执行并清空 connecting，因此返回局部变量
+        future.whenComplete((channel, e) -> connectCompleted(future, e));
+        return future;
+    }
+
+    private synchronized void connectCompleted(CompletableFuture<Channel> future, Throwable cause) {
+        if (connecting != future) {
+            return;
+        }
+        connecting = null;
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (cause == null) {
+            state = State.CONNECTED;
+            backoffMillis = initialBackoffMillis;
+            lastFailure = null;
+            return;
+        }
+        lastFailure = cause;
+        if (channels.isEmpty()) {
+            state = State.BACKOFF;
+        }
+        log.warn("Connect to [{}] failed, retry in [{}] ms", address, backoffMillis);
+        scheduleReconnect(backoffMillis);
+        backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+    }
+
+    private void scheduleReconnect(long delayMillis) {
+        if (reconnect != null) {
+            return;
+        }
+        reconnect = scheduler.schedule(this::reconnect, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void reconnect() {
+        reconnect = null;
+        // 已有连接时只是结束扩容的等待，下次 acquire 时再按需扩容
+        if (channels.isEmpty() && (state == State.BACKOFF || state == State.CONNECTED)) {
+            connect();
+        }
+    }
+
+    /**
+     * 连接断开后如果池中已经没有连接，在后台立即重连，调用方下次获取连接时无需等待
+     */
+    private synchronized void channelClosed(PooledChannel pooledChannel) {
+        if (!channels.remove(pooledChannel) || !channels.isEmpty() || state != State.CONNECTED) {
+            return;
+        }
+        log.info("All channels to [{}] closed, reconnect in background", address);
+        scheduleReconnect(0);
+    }
+
+    private void closeInternal() {
+        state = State.CLOSED;
+        if (reconnect != null) {
+            reconnect.cancel(false);
+            reconnect = null;
+        }
+    }
+
+    private synchronized Channel add(Channel channel) {
+        if (state == State.CLOSED) {
+            channel.close();
+            throw new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE, "channel pool closed: " + address);
+        }
+        PooledChannel pooledChannel = new PooledChannel(channel);
+        channel.attr(POOLED_CHANNEL).set(pooledChannel);
+        channels.add(pooledChannel);
+        channel.closeFuture().addListener(future -> channelClosed(pooledChannel));
+        log.info("Channel pool [{}] size: [{}]", address, channels.size());
+        return channel;
+    }
+
+    private static final class PooledChannel {
+
+        private final Channel channel;
+
+        /**
+         * 连接上已发送但还没有收到响应的请求数
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledChannel(Channel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -1,53 +1,101 @@
 package com.feyl.remoting.transport.netty.client;
 
+import com.feyl.enums.ChannelSelectEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.utils.RpcConfigUtil;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 
 /**
- * 存储和获取 Channel 对象
+ * 存储和获取 Channel 对象，每个服务地址对应一个连接池
  *
  * @author Feyl
  */
 @Slf4j
 public class ChannelProvider {
 
+    private static final long DEFAULT_BACKOFF_MILLIS = 100;
+
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 10_000;
+
     /**
      * key：网络套接字地址
-     * value：网络套接字地址对应的 channel
+     * value：网络套接字地址对应的连接池
      */
-    private final Map<String, Channel> channelMap;
+    private final Map<InetSocketAddress, ChannelPool> channelPoolMap;
+
+    private final int maxConnections;
+
+    private final ChannelSelectEnum channelSelect;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
 
     public ChannelProvider() {
-        channelMap = new ConcurrentHashMap<>();
+        channelPoolMap = new ConcurrentHashMap<>();
+        maxConnections = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CONNECTIONS, 1));
+        String select = RpcConfigUtil.getString(RpcConfigEnum.CLIENT_CHANNEL_SELECT, ChannelSelectEnum.ROUND_ROBIN.getName());
+        ChannelSelectEnum channelSelectEnum = ChannelSelectEnum.fromName(select);
+        if (channelSelectEnum == null) {
+            throw new IllegalArgumentException("Unknown channel select: " + select);
+        }
+        channelSelect = channelSelectEnum;
+        initialBackoffMillis = Math.max(1, RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_BACKOFF, DEFAULT_BACKOFF_MILLIS));
+        maxBackoffMillis = Math.max(initialBackoffMillis,
+                RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_MAX_BACKOFF, DEFAULT_MAX_BACKOFF_MILLIS));
     }
 
-    public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        // 确定是否有对应地址的连接
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // 如果是，则确定连接是否可用，如果可用，则直接获取它
-            if (channel != null && channel.isActive()) {
+    /**
+     * 获取到指定地址的连接
+     *
+     * @param inetSocketAddress 网络套接字地址
+     * @param connector         池中没有可用连接时用于建立连接
+     * @param scheduler         用于在后台重连
+     * @return 可用的连接，连接失败或处于重连等待中时以异常完成
+     */
+    public CompletableFuture<Channel> acquire(InetSocketAddress inetSocketAddress,
+                                              Function<InetSocketAddress, CompletableFuture<Channel>> connector,
+                                              ScheduledExecutorService scheduler) {
+        while (true) {
+            ChannelPool channelPool = channelPoolMap.computeIfAbsent(inetSocketAddress,
+                    address -> new ChannelPool(address, maxConnections, channelSelect, connector,
+                            scheduler, initialBackoffMillis, maxBackoffMillis));
+            CompletableFuture<Channel> channel = channelPool.acquire();
+            if (channel != null) {
                 return channel;
-            } else {
-                channelMap.remove(key);
             }
+            // 连接池刚好被空闲回收，移除后重新创建
+            channelPoolMap.remove(inetSocketAddress, channelPool);
         }
-        return null;
     }
 
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    public void remove(InetSocketAddress inetSocketAddress) {
+        ChannelPool channelPool = channelPoolMap.remove(inetSocketAddress);
+        if (channelPool != null) {
+            channelPool.close();
+        }
+        log.info("Channel pool map size:[{}]", channelPoolMap.size());
     }
 
-    public void remove(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
-        log.info("Channel map size:[{}]", channelMap.size());
+    /**
+     * 关闭所有空闲超时的连接，并移除已经没有连接的连接池
+     *
+     * @param idleNanos 空闲超时时间（纳秒）
+     */
+    public void reapIdle(long idleNanos) {
+        long now = System.nanoTime();
+        channelPoolMap.forEach((address, channelPool) -> {
+            if (channelPool.reapIdle(now, idleNanos)) {
+                channelPoolMap.remove(address, channelPool);
+            }
+        });
     }
 }
@@ -0,0 +1,223 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.enums.CompressTypeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.exception.RpcException;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.utils.RpcConfigUtil;
+import io.netty.channel.Channel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 客户端的一个流式响应，按服务端发送的顺序逐个返回元素
+ *
+ * 元素由 {@link NettyRpcClientHandler} 在 channel 的 EventLoop 中放入队列，调用方在自己的线程中取出；
+ * 每消费半个窗口的元素向服务端归还一次额度，服务端最多领先调用方一个窗口，队列不会无限增长。
+ * 没有取完就不再需要时应调用 {@link #close()}，通知服务端停止发送。
+ *
+ * 迭代器只能由一个线程使用。
+ *
+ * @author Feyl
+ */
+public class ClientStream implements Iterator<Object>, AutoCloseable {
+
+    /**
+     * 接收窗口，随请求发送给服务端作为服务端的初始额度
+     */
+    static final int WINDOW = RpcConfigUtil.getInt(RpcConfigEnum.STREAM_WINDOW, 64);
+
+    /**
+     * 归还额度的批量，消费这么多个元素后归还一次
+     */
+    private static final int CREDIT_BATCH = Math.max(1, WINDOW / 2);
+
+    /**
+     * 队列中代表 null 元素的对象
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * 队列中代表流结束的对象，结束原因见 {@link #terminal}
+     */
+    private static final Object END = new Object();
+
+    private final long requestId;
+
+    /**
+     * 等待下一个元素的超时时间（毫秒）
+     */
+    private final long timeoutMillis;
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 流结束的原因：服务端的 {@link RpcResponse} 或者本地的异常
+     */
+    private final AtomicReference<Object> terminal = new AtomicReference<>();
+
+    /**
+     * 请求写出的 channel，请求登记前为 null
+     */
+    private volatile Channel channel;
+
+    private volatile boolean cancelled;
+
+    private Object next;
+
+    private boolean finished;
+
+    private int consumed;
+
+    public ClientStream(long requestId, long timeoutMillis) {
+        this.requestId = requestId;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void attach(Channel channel) {
+        this.channel = channel;
+    }
+
+    void onData(Object element) {
+        queue.add(element == null ? NULL : element);
+    }
+
+    /**
+     * 服务端结束了流；方法没有以流式响应返回时，完整结果中的元素依次放入队列
+     */
+    void onEnd(RpcResponse<Object> rpcResponse) {
+        if (isSuccess(rpcResponse) && rpcResponse.getData() instanceof Iterable) {
+            for (Object element : (Iterable<?>) rpcResponse.getData()) {
+                onData(element);
+            }
+        }
+        terminate(rpcResponse);
+    }
+
+    void onError(Throwable cause) {
+        terminate(cause);
+    }
+
+    private void terminate(Object reason) {
+        if (terminal.compareAndSet(null, reason)) {
+            queue.add(END);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object element;
+        try {
+            element = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RpcException("stream interrupted: " + requestId, e);
+        }
+        if (element == null) {
+            close();
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, "stream:" + requestId);
+        }
+        if (element == END) {
+            finished = true;
+            check(terminal.get());
+            return false;
+        }
+        next = element;
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object element = next;
+        next = null;
+        if (++consumed >= CREDIT_BATCH) {
+            grant(consumed);
+            consumed = 0;
+        }
+        return element == NULL ? null : element;
+    }
+
+    /**
+     * 不再需要剩余的元素，通知服务端取消该流
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        next = null;
+        cancelled = true;
+        grant(-1);
+    }
+
+    /**
+     * 向服务端归还额度，额度小于 0 表示取消
+     */
+    private void grant(int credit) {
+        Channel ch = channel;
+        // 服务端已经结束了该流时不必再归还额度
+        if (ch == null || terminal.get() != null) {
+            return;
+        }
+        RpcMessage rpcMsg = new RpcMessage();
+        rpcMsg.setRequestId(requestId);
+        rpcMsg.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMsg.setCompress(CompressTypeEnum.NONE.getCode());
+        rpcMsg.setMessageType(RpcConstant.STREAM_CREDIT_TYPE);
+        rpcMsg.setData(credit);
+        ch.writeAndFlush(rpcMsg);
+    }
+
+    private static boolean isSuccess(RpcResponse<?> rpcResponse) {
+        return rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode());
+    }
+
+    private void check(Object reason) {
+        if (reason instanceof RuntimeException) {
+            throw (RuntimeException) reason;
+        }
+        if (reason instanceof Throwable) {
+            throw new RpcException("stream failed: " + requestId, (Throwable) reason);
+        }
+        RpcResponse<?> rpcResponse = (RpcResponse<?>) reason;
+        if (!isSuccess(rpcResponse)) {
+            RpcError error = rpcResponse.getError();
+            if (error != null) {
+                throw new RpcRemoteException(rpcResponse.getCode(), error.getExceptionClass(), error.getMessage(),
+                        error.getStackTrace());
+            }
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "stream:" + requestId);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.feyl.remoting.transport.netty.client;
 
-import com.feyl.enums.CompressTypeEnum;
+import com.feyl.compress.CompressPolicy;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
 import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.exception.RpcException;
 import com.feyl.extension.ExtensionLoader;
 import com.feyl.factory.SingletonFactory;
 import com.feyl.registry.ServiceDiscovery;
@@ -9,21 +12,28 @@ import com.feyl.remoting.constants.RpcConstant;
 import com.feyl.remoting.dto.RpcMessage;
 import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.stream.RpcStreamObserver;
 import com.feyl.remoting.transport.RpcRequestTransport;
+import com.feyl.remoting.transport.netty.BidiStream;
+import com.feyl.remoting.transport.netty.NettyTransport;
 import com.feyl.remoting.transport.netty.codec.RpcMessageDecoder;
 import com.feyl.remoting.transport.netty.codec.RpcMessageEncoder;
+import com.feyl.remoting.transport.netty.flush.RpcFlushConsolidationHandler;
+import com.feyl.utils.RpcConfigUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -40,14 +50,19 @@ import java.util.concurrent.TimeUnit;
 public class NettyRpcClient implements RpcRequestTransport {
 
     /**
-     * 服务发现中心
+     * 连接默认的空闲超时时间（秒）
      */
-    private final ServiceDiscovery serviceDiscovery;
+    private static final long DEFAULT_IDLE_TIMEOUT = 60;
 
     /**
-     * 服务器未响应的请求
+     * 远程调用默认的超时时间（毫秒）
      */
-    private final UnprocessedRequests unprocessedRequests;
+    private static final long DEFAULT_TIMEOUT = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_TIMEOUT, 10_000);
+
+    /**
+     * 服务发现中心
+     */
+    private final ServiceDiscovery serviceDiscovery;
 
     /**
      * 根据网络套接字地址获取对应的 channel
@@ -60,10 +75,11 @@ public class NettyRpcClient implements RpcRequestTransport {
 
 
     public NettyRpcClient() {
-        eventLoopGroup = new NioEventLoopGroup();
+        eventLoopGroup = NettyTransport.newEventLoopGroup(0);
         bootstrap = new Bootstrap();
+        // 根据运行环境选择 epoll 或 NIO 传输
+        NettyTransport.configure(bootstrap);
         bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
                 .handler(new LoggingHandler(LogLevel.INFO))
                 //连接超时时间，如果超过这个时间，或者连接无法建立，则连接失败。
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
@@ -71,85 +87,246 @@ public class NettyRpcClient implements RpcRequestTransport {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
                         ChannelPipeline p = ch.pipeline();
+                        // 合并 flush 的处理器需要最靠近 socket，放在 pipeline 的最前面
+                        if (RpcFlushConsolidationHandler.isEnabled()) {
+                            p.addLast(new RpcFlushConsolidationHandler());
+                        }
                         // 如果5秒内没有向服务器发送数据，则发送心跳请求
                         p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
                         p.addLast(new RpcMessageEncoder());
                         p.addLast(new RpcMessageDecoder());
+                        // 合并请求的处理器位于编码器之前，接收 NettyRpcClientHandler 登记后写出的请求消息
+                        if (CallCoalescingHandler.isEnabled()) {
+                            p.addLast(new CallCoalescingHandler());
+                        }
                         p.addLast(new NettyRpcClientHandler());
                     }
                 });
         this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zookeeper");
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
+        // 定期关闭空闲的连接
+        long idleTimeout = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+        if (idleTimeout > 0) {
+            long idleNanos = TimeUnit.SECONDS.toNanos(idleTimeout);
+            eventLoopGroup.scheduleAtFixedRate(() -> channelProvider.reapIdle(idleNanos),
+                    idleTimeout, idleTimeout, TimeUnit.SECONDS);
+        }
     }
 
 
     /**
-     * 根据网络套接字地址获取对应的 channel
+     * 根据网络套接字地址从连接池中获取 channel，没有可用连接时异步建立连接，同一地址同一时刻只会建立一个连接
      *
      * @param inetSocketAddress 网络套接字地址
-     * @return 套接字地址对应的 channel
+     * @return 获取到 channel 后完成的 future，连接失败或处于重连等待中时以异常完成
      */
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        Channel channel = channelProvider.get(inetSocketAddress);
-        if (channel == null) {
-            channel = doConnect(inetSocketAddress);
-            channelProvider.set(inetSocketAddress, channel);
-        }
-        return channel;
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        return channelProvider.acquire(inetSocketAddress, this::doConnect, eventLoopGroup);
     }
 
     /**
      * 连接服务器并获得通信通道
      *
      * @param inetSocketAddress 网络套接字地址
-     * @return 根据套接字地址连接服务器获取的通信通道
+     * @return 连接建立后完成的 future，连接失败时以异常完成
      */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
+    public CompletableFuture<Channel> doConnect(InetSocketAddress inetSocketAddress) {
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
         bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
                 log.info("客户端连接 [{}] 成功！", inetSocketAddress.toString());
                 completableFuture.complete(future.channel());
             } else {
-                throw new IllegalStateException();
+                completableFuture.completeExceptionally(future.cause());
             }
         });
-        return completableFuture.get();
+        return completableFuture;
     }
 
     /**
      * 向服务端发送 RPC请求
+     * 获取连接和发送请求都是异步的，调用线程不会因为连接建立而阻塞
      *
      * @param rpcRequest 封装RPC请求的实例
      * @return 用于存储响应结果的CompletableFuture<RpcResponse<Object>>
      */
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
-        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        if (rpcRequest.isOneway()) {
+            return sendOneway(rpcRequest);
+        }
+        if (rpcRequest.isStream()) {
+            return sendStream(rpcRequest);
+        }
+        if (rpcRequest.getStreamObserver() != null) {
+            return sendBidiStream(rpcRequest);
+        }
+        RpcCall call = newCall(rpcRequest);
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            RpcMessage rpcMsg = RpcMessage.builder()
-                    .data(rpcRequest)
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstant.REQUEST_TYPE).build();
+        getChannel(inetSocketAddress).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                log.error("获取连接失败：", cause);
+                call.getFuture().completeExceptionally(cause);
+            } else {
+                send(channel, call, Collections.singletonList(call));
+            }
+        });
+        return call.getFuture();
+    }
+
+    /**
+     * 批量发送 RPC请求：发往同一服务地址的请求合并为一个 BATCH 帧，消息头和压缩只有一份
+     *
+     * @param rpcRequests 封装RPC请求的实例
+     * @return 每个请求的 CompletableFuture<RpcResponse<Object>>，与请求一一对应
+     */
+    @Override
+    public List<Object> sendRpcRequests(List<RpcRequest> rpcRequests) {
+        List<Object> results = new ArrayList<>(rpcRequests.size());
+        Map<InetSocketAddress, List<RpcCall>> callsByAddress = new LinkedHashMap<>();
+        for (RpcRequest rpcRequest : rpcRequests) {
+            if (rpcRequest.isOneway()) {
+                results.add(sendOneway(rpcRequest));
+                continue;
+            }
+            RpcCall call = newCall(rpcRequest);
+            results.add(call.getFuture());
+            callsByAddress.computeIfAbsent(serviceDiscovery.lookupService(rpcRequest), k -> new ArrayList<>()).add(call);
+        }
+        callsByAddress.forEach((inetSocketAddress, calls) -> getChannel(inetSocketAddress).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                log.error("获取连接失败：", cause);
+                calls.forEach(call -> call.getFuture().completeExceptionally(cause));
+            } else {
+                send(channel, calls.size() == 1 ? calls.get(0) : new RpcBatchCall(calls), calls);
+            }
+        }));
+        return results;
+    }
+
+    /**
+     * 发送单向请求：不登记未响应的请求，不设置超时，服务端也不返回响应
+     *
+     * @return 请求写出后完成的 CompletableFuture<Void>，获取连接或写出失败时以异常完成
+     */
+    private CompletableFuture<Void> sendOneway(RpcRequest rpcRequest) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        RpcMessage rpcMsg = newMessage(rpcRequest, RpcConstant.ONEWAY_REQUEST_TYPE);
+        getChannel(serviceDiscovery.lookupService(rpcRequest)).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                log.error("获取连接失败：", cause);
+                written.completeExceptionally(cause);
+                return;
+            }
             channel.writeAndFlush(rpcMsg).addListener((ChannelFutureListener) future -> {
                 if (future.isSuccess()) {
-                    log.info("客户端发送消息：[{}]", rpcMsg);
+                    written.complete(null);
                 } else {
-                    future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("发送失败：", future.cause());
+                    log.error("单向请求发送失败：", future.cause());
+                    written.completeExceptionally(future.cause());
+                }
+            });
+        });
+        return written;
+    }
+
+    /**
+     * 发送流式请求：服务端逐个发送结果中的元素，调用方边接收边消费，见 {@link ClientStream}
+     *
+     * @return 接收元素的 ClientStream，获取连接或写出失败时在取元素时抛出异常
+     */
+    private ClientStream sendStream(RpcRequest rpcRequest) {
+        ClientStream stream = new ClientStream(rpcRequest.getRequestId(), timeout(rpcRequest));
+        rpcRequest.setStreamWindow(ClientStream.WINDOW);
+        RpcMessage rpcMsg = newMessage(rpcRequest, RpcConstant.REQUEST_TYPE);
+        getChannel(serviceDiscovery.lookupService(rpcRequest)).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                log.error("获取连接失败：", cause);
+                stream.onError(cause);
+                return;
+            }
+            channel.writeAndFlush(new RpcStreamCall(rpcMsg, stream)).addListener((ChannelFutureListener) future -> {
+                if (!future.isSuccess()) {
+                    log.error("流式请求发送失败：", future.cause());
+                    stream.onError(future.cause());
+                }
+            });
+        });
+        return stream;
+    }
+
+    /**
+     * 发起双向流式调用：请求写出后两个方向在同一个连接上以请求ID为流ID收发消息，见 {@link BidiStream}
+     *
+     * @return 向服务端发送消息的 observer；获取连接或写出失败时调用方的 observer 收到 onError
+     */
+    private RpcStreamObserver<Object> sendBidiStream(RpcRequest rpcRequest) {
+        // 服务端的接收窗口在第一个 STREAM_CREDIT 帧中告知，收到之前不发送消息
+        BidiStream stream = new BidiStream(rpcRequest.getRequestId(), timeout(rpcRequest), false, 0);
+        rpcRequest.setStreamWindow(BidiStream.WINDOW);
+        stream.start(rpcRequest.getStreamObserver());
+        RpcMessage rpcMsg = newMessage(rpcRequest, RpcConstant.REQUEST_TYPE);
+        getChannel(serviceDiscovery.lookupService(rpcRequest)).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                log.error("获取连接失败：", cause);
+                stream.fail(cause);
+                return;
+            }
+            channel.writeAndFlush(new RpcBidiCall(rpcMsg, stream)).addListener((ChannelFutureListener) future -> {
+                if (!future.isSuccess()) {
+                    log.error("双向流式请求发送失败：", future.cause());
+                    stream.fail(future.cause());
                 }
             });
-        } else {
-            throw new IllegalStateException();
+        });
+        return stream.outbound();
+    }
+
+    /**
+     * 创建远程调用，超时时间从发起调用开始计算，包括建立连接的时间
+     */
+    private static RpcCall newCall(RpcRequest rpcRequest) {
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        UnprocessedRequests.timeout(rpcRequest.getRequestId(), resultFuture, timeout(rpcRequest));
+        return new RpcCall(newMessage(rpcRequest, RpcConstant.REQUEST_TYPE), resultFuture);
+    }
+
+    private static RpcMessage newMessage(RpcRequest rpcRequest, byte messageType) {
+        return RpcMessage.builder()
+                .requestId(rpcRequest.getRequestId())
+                .data(rpcRequest)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressPolicy.configuredCompressType())
+                .messageType(messageType).build();
+    }
+
+    private static long timeout(RpcRequest rpcRequest) {
+        return rpcRequest.getTimeout() > 0 ? rpcRequest.getTimeout() : DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * 写出一个或一批远程调用
+     *
+     * @param msg   {@link RpcCall} 或 {@link RpcBatchCall}
+     * @param calls msg 包含的远程调用，写出失败时全部失败
+     */
+    private void send(Channel channel, Object msg, List<RpcCall> calls) {
+        if (!channel.isActive()) {
+            RpcException cause = new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                    String.valueOf(channel.remoteAddress()));
+            calls.forEach(call -> call.getFuture().completeExceptionally(cause));
+            return;
         }
-        return resultFuture;
+        // 请求在 channel 的 EventLoop 中登记到该连接未响应的请求中，见 NettyRpcClientHandler#write
+        channel.writeAndFlush(msg).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info("客户端发送 [{}] 个请求", calls.size());
+            } else {
+                future.channel().close();
+                calls.forEach(call -> call.getFuture().completeExceptionally(future.cause()));
+                log.error("发送失败：", future.cause());
+            }
+        });
     }
 
     /**
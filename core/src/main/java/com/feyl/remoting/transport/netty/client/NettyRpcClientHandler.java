@@ -1,21 +1,30 @@
 package com.feyl.remoting.transport.netty.client;
 
 import com.feyl.enums.CompressTypeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
 import com.feyl.enums.SerializationTypeEnum;
-import com.feyl.factory.SingletonFactory;
+import com.feyl.exception.RpcException;
 import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.MethodTable;
 import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.transport.netty.BidiStream;
+import com.feyl.utils.RpcConfigUtil;
 import io.netty.channel.*;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * 自定义客户端 ChannelHandler 处理来自服务端发送的数据
+ * 自定义客户端 ChannelHandler 处理来自服务端发送的数据，并在写出请求时登记未响应的请求
  *
  * {@link SimpleChannelInboundHandler}
  * 如果继承自 SimpleChannelInboundHandler 的话就不要考虑 ByteBuf 的释放，
@@ -24,15 +33,127 @@ import java.net.InetSocketAddress;
  * @author Feyl
  */
 @Slf4j
-public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
+public class NettyRpcClientHandler extends ChannelDuplexHandler {
 
-    private final UnprocessedRequests unprocessedRequests;
+    /**
+     * 连接建立后是否与服务端握手
+     */
+    private static final boolean HANDSHAKE = RpcConfigUtil.getBoolean(RpcConfigEnum.CLIENT_HANDSHAKE, true);
+
+    /**
+     * 当前 channel 上未响应的请求，只在 channel 的 EventLoop 中访问
+     */
+    private UnprocessedRequests unprocessedRequests;
+
+    /**
+     * 握手时服务端返回的方法表，收到之前为 null，只在 channel 的 EventLoop 中访问
+     */
+    private MethodTable methodTable;
 
-    private final NettyRpcClient nettyRpcClient;
+    /**
+     * 当前 channel 上进行中的流式调用，只在 channel 的 EventLoop 中访问
+     */
+    private final LongObjectMap<ClientStream> streams = new LongObjectHashMap<>();
 
-    public NettyRpcClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
+    /**
+     * 当前 channel 上进行中的双向流式调用，只在 channel 的 EventLoop 中访问
+     */
+    private final LongObjectMap<BidiStream> bidiStreams = new LongObjectHashMap<>();
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        unprocessedRequests = new UnprocessedRequests(ctx.channel());
+    }
+
+    /**
+     * 连接建立后向服务端请求方法表
+     */
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (HANDSHAKE) {
+            RpcMessage rpcMsg = new RpcMessage();
+            rpcMsg.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+            rpcMsg.setCompress(CompressTypeEnum.NONE.getCode());
+            rpcMsg.setMessageType(RpcConstant.HANDSHAKE_REQUEST_TYPE);
+            ctx.writeAndFlush(rpcMsg).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+        super.channelActive(ctx);
+    }
+
+    /**
+     * 写出远程调用时先登记请求，再把请求消息交给编码器；一批远程调用逐个登记后合并为一个 BATCH 消息；
+     * 单向请求不需要登记，直接交给编码器；流式调用登记接收元素的 {@link ClientStream}，取消流时移除登记；
+     * 双向流式调用登记 {@link BidiStream}，两个方向都结束后移除登记
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof RpcMessage && ((RpcMessage) msg).getMessageType() == RpcConstant.ONEWAY_REQUEST_TYPE) {
+            ctx.write(compact((RpcMessage) msg), promise);
+        } else if (msg instanceof RpcStreamCall) {
+            RpcStreamCall call = (RpcStreamCall) msg;
+            ClientStream stream = call.getStream();
+            if (stream.isCancelled()) {
+                // 写出之前调用方已经关闭了流，不必再发送请求
+                promise.setSuccess();
+                return;
+            }
+            stream.attach(ctx.channel());
+            streams.put(stream.getRequestId(), stream);
+            ctx.write(compact(call.getMessage()), promise);
+        } else if (msg instanceof RpcBidiCall) {
+            BidiStream stream = ((RpcBidiCall) msg).getStream();
+            long streamId = stream.getStreamId();
+            bidiStreams.put(streamId, stream);
+            stream.attach(ctx.channel(), null, () -> bidiStreams.remove(streamId, stream));
+            ctx.write(compact(((RpcBidiCall) msg).getMessage()), promise);
+        } else if (msg instanceof RpcCall) {
+            ctx.write(register((RpcCall) msg), promise);
+        } else if (msg instanceof RpcBatchCall) {
+            List<RpcCall> calls = ((RpcBatchCall) msg).getCalls();
+            List<RpcMessage> items = new ArrayList<>(calls.size());
+            for (RpcCall call : calls) {
+                items.add(register(call));
+            }
+            RpcMessage first = items.get(0);
+            ctx.write(RpcMessage.builder()
+                    .messageType(RpcConstant.BATCH_TYPE)
+                    .codec(first.getCodec())
+                    .compress(first.getCompress())
+                    .data(items).build(), promise);
+        } else {
+            if (msg instanceof RpcMessage && ((RpcMessage) msg).getMessageType() == RpcConstant.STREAM_CREDIT_TYPE
+                    && (Integer) ((RpcMessage) msg).getData() < 0) {
+                streams.remove(((RpcMessage) msg).getRequestId());
+            }
+            ctx.write(msg, promise);
+        }
+    }
+
+    /**
+     * 登记请求，返回要发送的请求消息
+     */
+    private RpcMessage register(RpcCall call) {
+        RpcMessage rpcMsg = call.getMessage();
+        unprocessedRequests.put(rpcMsg.getRequestId(), call.getFuture());
+        return compact(rpcMsg);
+    }
+
+    /**
+     * 握手完成后，服务端导出的方法只发送方法ID和实际参数；握手完成前的请求仍然发送完整的请求
+     */
+    private RpcMessage compact(RpcMessage rpcMsg) {
+        if (methodTable != null && rpcMsg.getData() instanceof RpcRequest) {
+            RpcRequest rpcRequest = (RpcRequest) rpcMsg.getData();
+            int methodId = methodTable.getMethodId(rpcRequest);
+            if (methodId != 0) {
+                rpcMsg.setData(RpcRequest.builder()
+                        .requestId(rpcRequest.getRequestId())
+                        .methodId(methodId)
+                        .parameters(rpcRequest.getParameters())
+                        .streamWindow(rpcRequest.getStreamWindow()).build());
+            }
+        }
+        return rpcMsg;
     }
 
     /**
@@ -47,9 +168,38 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                 byte msgType = rpcMsg.getMessageType();
                 if (msgType == RpcConstant.HEARTBEAT_RESPONSE_TYPE) {
                     log.info("心跳： [{}]", rpcMsg.getData());
+                } else if (msgType == RpcConstant.HANDSHAKE_RESPONSE_TYPE) {
+                    methodTable = (MethodTable) rpcMsg.getData();
+                    log.info("握手完成，服务端导出 [{}] 个方法", methodTable.getMethods().size());
+                } else if (msgType == RpcConstant.STREAM_DATA_TYPE) {
+                    Object data = ((RpcResponse<Object>) rpcMsg.getData()).getData();
+                    ClientStream stream = streams.get(rpcMsg.getRequestId());
+                    BidiStream bidiStream = stream == null ? bidiStreams.get(rpcMsg.getRequestId()) : null;
+                    if (stream != null) {
+                        stream.onData(data);
+                    } else if (bidiStream != null) {
+                        bidiStream.onData(data);
+                    } else {
+                        // 调用方已经不再接收该流，通知服务端停止发送
+                        cancel(ctx, rpcMsg.getRequestId());
+                    }
+                } else if (msgType == RpcConstant.STREAM_END_TYPE) {
+                    endStream(rpcMsg.getRequestId(), (RpcResponse<Object>) rpcMsg.getData());
+                } else if (msgType == RpcConstant.STREAM_CREDIT_TYPE) {
+                    BidiStream bidiStream = bidiStreams.get(rpcMsg.getRequestId());
+                    if (bidiStream != null) {
+                        bidiStream.onCredit((Integer) rpcMsg.getData());
+                    }
                 } else if (msgType == RpcConstant.RESPONSE_TYPE) {
                     RpcResponse<Object> rpcResponse = (RpcResponse<Object>) rpcMsg.getData();
-                    unprocessedRequests.complete(rpcResponse);
+                    // 服务方法没有以流式响应返回（或调用失败）时，流式调用收到的是普通响应
+                    if (!endStream(rpcMsg.getRequestId(), rpcResponse)) {
+                        unprocessedRequests.complete(rpcResponse);
+                    }
+                } else if (msgType == RpcConstant.BATCH_TYPE) {
+                    for (RpcMessage item : (List<RpcMessage>) rpcMsg.getData()) {
+                        unprocessedRequests.complete((RpcResponse<Object>) item.getData());
+                    }
                 }
             }
         }finally {
@@ -59,6 +209,50 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
     }
 
 
+    /**
+     * 结束请求ID对应的流式调用或双向流式调用的接收方向
+     *
+     * @return 是否有对应的流
+     */
+    private boolean endStream(long requestId, RpcResponse<Object> rpcResponse) {
+        ClientStream stream = streams.isEmpty() ? null : streams.remove(requestId);
+        if (stream != null) {
+            stream.onEnd(rpcResponse);
+            return true;
+        }
+        BidiStream bidiStream = bidiStreams.isEmpty() ? null : bidiStreams.get(requestId);
+        if (bidiStream != null) {
+            bidiStream.onEnd(rpcResponse);
+            return true;
+        }
+        return false;
+    }
+
+    private static void cancel(ChannelHandlerContext ctx, long requestId) {
+        RpcMessage rpcMsg = new RpcMessage();
+        rpcMsg.setRequestId(requestId);
+        rpcMsg.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMsg.setCompress(CompressTypeEnum.NONE.getCode());
+        rpcMsg.setMessageType(RpcConstant.STREAM_CREDIT_TYPE);
+        rpcMsg.setData(-1);
+        ctx.writeAndFlush(rpcMsg);
+    }
+
+    /**
+     * 连接断开时，该连接上所有未响应的请求和进行中的流式调用立即失败，不必等到超时
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        RpcException cause = new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                "channel closed: " + ctx.channel().remoteAddress());
+        unprocessedRequests.failAll(cause);
+        streams.values().forEach(stream -> stream.onError(cause));
+        streams.clear();
+        bidiStreams.values().forEach(stream -> stream.fail(cause));
+        bidiStreams.clear();
+        super.channelInactive(ctx);
+    }
+
     /**
      * 客户端超过 5s 没有发送消息时，将触发该方法向服务端发送心跳信号
      */
@@ -68,10 +262,11 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
                 log.info("Write idle 发生 [{}]", ctx.channel().remoteAddress());
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                // 心跳在空闲的连接本身上发送，连接池中的每个连接各自保活
+                Channel channel = ctx.channel();
                 RpcMessage rpcMsg = new RpcMessage();
                 rpcMsg.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
-                rpcMsg.setCompress(CompressTypeEnum.GZIP.getCode());
+                rpcMsg.setCompress(CompressTypeEnum.NONE.getCode());
                 rpcMsg.setMessageType(RpcConstant.HEARTBEAT_REQUEST_TYPE);
                 rpcMsg.setData(RpcConstant.PING);
                 channel.writeAndFlush(rpcMsg).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
@@ -0,0 +1,18 @@
+package com.feyl.remoting.transport.netty.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 写到 channel 上的一批远程调用，由 {@link NettyRpcClientHandler} 逐个登记后合并为一个 BATCH 帧发送
+ *
+ * @author Feyl
+ */
+@Getter
+@AllArgsConstructor
+public class RpcBatchCall {
+
+    private final List<RpcCall> calls;
+}
@@ -0,0 +1,22 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.transport.netty.BidiStream;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 写到 channel 上的一次双向流式调用：请求消息及该调用在客户端的 {@link BidiStream}
+ *
+ * 由 {@link NettyRpcClientHandler} 在 channel 的 EventLoop 中登记后，再把请求消息交给编码器。
+ *
+ * @author Feyl
+ */
+@Getter
+@AllArgsConstructor
+public class RpcBidiCall {
+
+    private final RpcMessage message;
+
+    private final BidiStream stream;
+}
@@ -0,0 +1,24 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 写入 channel 的一次远程调用：请求消息及其响应结果
+ *
+ * 由 {@link NettyRpcClientHandler} 在 channel 的 EventLoop 中登记到未响应的请求中，再把请求消息交给编码器。
+ *
+ * @author Feyl
+ */
+@Getter
+@AllArgsConstructor
+public class RpcCall {
+
+    private final RpcMessage message;
+
+    private final CompletableFuture<RpcResponse<Object>> future;
+}
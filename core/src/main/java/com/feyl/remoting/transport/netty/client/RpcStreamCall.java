@@ -0,0 +1,21 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.remoting.dto.RpcMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 写到 channel 上的一次流式调用：请求消息及接收元素的 {@link ClientStream}
+ *
+ * 由 {@link NettyRpcClientHandler} 在 channel 的 EventLoop 中登记后，再把请求消息交给编码器。
+ *
+ * @author Feyl
+ */
+@Getter
+@AllArgsConstructor
+public class RpcStreamCall {
+
+    private final RpcMessage message;
+
+    private final ClientStream stream;
+}
@@ -1,40 +1,137 @@
 package com.feyl.remoting.transport.netty.client;
 
+import com.feyl.enums.RpcErrorMessageEnum;
+import com.feyl.exception.RpcException;
 import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.utils.threadpool.ThreadPoolUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.collection.LongObjectHashMap;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * 服务器未响应的请求。
+ * 一个 channel 上服务器未响应的请求。
+ *
+ * 每个 channel 持有一个实例，请求ID（消息头中的 long）到 future 的映射使用开放寻址的 {@link LongObjectHashMap}，
+ * 只在该 channel 的 EventLoop 中访问：登记、完成都不需要加锁，也没有所有连接共用的竞争热点。
+ * 超时或写出失败发生在其他线程时，future 先以异常完成，映射中的记录再提交到 EventLoop 中移除。
+ *
+ * 请求超时由所有客户端共用的 {@link HashedWheelTimer} 检查：添加、取消超时任务都是 O(1)，
+ * 大量并发请求时比为每个请求创建一个 ScheduledFuture 开销小得多，精度（10ms）对 RPC 超时足够。
+ *
+ * <a href="https://netty.io/4.1/api/io/netty/util/HashedWheelTimer.html">HashedWheelTimer</a>
  *
  * @author Feyl
  */
+@Slf4j
 public class UnprocessedRequests {
 
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            ThreadPoolUtil.createThreadFactory("rpc-timeout-timer", true), 10, TimeUnit.MILLISECONDS);
+
+    private final Channel channel;
+
     /**
      * key：请求ID requestId
      * value：请求对应的响应结果（正常结果或异常对象）
      */
-    private static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
+    private final LongObjectHashMap<CompletableFuture<RpcResponse<Object>>> futures = new LongObjectHashMap<>();
+
+    public UnprocessedRequests(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 为请求设置超时时间，超时后以 {@link RpcException} 完成 future，已登记的记录随之移除
+     *
+     * @param timeoutMillis 超时时间（毫秒），不大于 0 时不超时
+     */
+    public static void timeout(long requestId, CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return;
+        }
+        Timeout timeout = TIMEOUT_TIMER.newTimeout(t -> future.completeExceptionally(
+                new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, requestId + " after " + timeoutMillis + "ms")),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((response, cause) -> timeout.cancel());
+    }
 
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    /**
+     * 记录已经写到 channel 上的请求，必须在 channel 的 EventLoop 中调用
+     */
+    public void put(long requestId, CompletableFuture<RpcResponse<Object>> future) {
+        assert channel.eventLoop().inEventLoop();
+        if (future.isDone()) {
+            return;
+        }
+        futures.put(requestId, future);
+        ChannelPool.incrementPending(channel);
+        // 超时、写出失败等以异常结束的请求需要移除，回调可能在任意线程执行
+        future.whenComplete((response, cause) -> {
+            if (cause != null) {
+                EventLoop eventLoop = channel.eventLoop();
+                if (eventLoop.inEventLoop()) {
+                    remove(requestId, future);
+                } else {
+                    eventLoop.execute(() -> remove(requestId, future));
+                }
+            }
+        });
     }
 
     /**
-     * 收到服务器的响应消息，从存储完成响应的请求的Map中移除该远程调用请求
+     * 收到服务器的响应消息，移除并完成对应的请求，必须在 channel 的 EventLoop 中调用
      *
-     * @param rpcResponse
+     * @param rpcResponse 响应消息
      */
     public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
+        long requestId = rpcResponse.getRequestId();
+        CompletableFuture<RpcResponse<Object>> future = futures.remove(requestId);
         if (future != null) {
+            ChannelPool.decrementPending(channel);
             future.complete(rpcResponse);
         } else {
-            throw new IllegalStateException();
+            // 请求已经超时或失败，丢弃迟到的响应
+            log.warn("Discard response of unknown request [{}]", requestId);
+        }
+    }
+
+    /**
+     * 连接断开时调用，channel 上所有未响应的请求立即失败
+     */
+    public void failAll(Throwable cause) {
+        if (futures.isEmpty()) {
+            return;
         }
+        List<CompletableFuture<RpcResponse<Object>>> pending = new ArrayList<>(futures.values());
+        futures.clear();
+        for (CompletableFuture<RpcResponse<Object>> future : pending) {
+            ChannelPool.decrementPending(channel);
+            future.completeExceptionally(cause);
+        }
+        log.warn("Failed [{}] unprocessed requests of closed channel [{}]", pending.size(), channel);
     }
 
+    /**
+     * 未响应的请求数量
+     */
+    public int size() {
+        return futures.size();
+    }
+
+    private void remove(long requestId, CompletableFuture<RpcResponse<Object>> future) {
+        // 只移除同一个请求，避免误删
+        if (futures.get(requestId) == future) {
+            futures.remove(requestId);
+            ChannelPool.decrementPending(channel);
+        }
+    }
 }
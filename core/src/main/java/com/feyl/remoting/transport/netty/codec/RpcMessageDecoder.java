@@ -1,35 +1,46 @@
 package com.feyl.remoting.transport.netty.codec;
 
 import com.feyl.compress.Compressor;
+import com.feyl.compress.dict.DictionaryCompressor;
+import com.feyl.compress.dict.OutboundDictionaries;
 import com.feyl.enums.CompressTypeEnum;
 import com.feyl.enums.SerializationTypeEnum;
 import com.feyl.extension.ExtensionLoader;
 import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.MethodTable;
 import com.feyl.remoting.dto.RpcMessage;
 import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
 import com.feyl.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.collection.IntObjectHashMap;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Arrays;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 根据自定义协议设置的解码器
  *
- *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
- *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
- *   |   magic   code        |version |     full  length    |messageType| codec |compress|    RequestId      |
- *   +-----------------------+--------+---------------------+-----------+-----------+-----------+------------+
- *   |                                                                                                       |
- *   |                                         body                                                          |
- *   |                                                                                                       |
- *   |                                        ... ...                                                        |
- *   +-------------------------------------------------------------------------------------------------------+
+ *   0     1     2     3     4        5     6     7     8         9          10      11     12 ... 19
+ *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+--------+-----------------+
+ *   |   magic   code        |version |     full  length    |messageType| codec |compress|    RequestId    |
+ *   +-----------------------+--------+---------------------+-----------+-------+--------+-----------------+
+ *   |                                                                                                     |
+ *   |                                         body                                                        |
+ *   |                                                                                                     |
+ *   |                                        ... ...                                                      |
+ *   +-----------------------------------------------------------------------------------------------------+
  * 4B  magic code（魔法数）   1B version（版本）    4B full length（消息长度）    1B messageType（消息类型）
- * 1B codec（序列化类型）    1B compress（压缩类型）  4B  requestId（请求的Id）
+ * 1B codec（序列化类型）    1B compress（压缩类型）  8B  requestId（请求的Id，关联请求与响应）
  * body（object类型数据）
  *
  * {@link LengthFieldBasedFrameDecoder} is a length-based decoder,
@@ -42,6 +53,17 @@ import java.util.Arrays;
 @Slf4j
 public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
 
+    /**
+     * BATCH 消息体中每个消息的固定部分：1B 消息类型 + 8B 请求ID + 4B 数据长度
+     */
+    private static final int BATCH_ITEM_HEAD_LENGTH = 13;
+
+    /**
+     * 对端通过 DICTIONARY 帧发来的压缩字典
+     * key：字典 id
+     * value：字典内容
+     */
+    private final IntObjectHashMap<byte[]> dictionaries = new IntObjectHashMap<>();
 
     public RpcMessageDecoder() {
 
@@ -87,7 +109,7 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
         return decoded;
     }
 
-    private Object decodeFrame(ByteBuf in) {
+    private Object decodeFrame(ByteBuf in) throws IOException {
         // 注意：必须按照顺序读取
         checkMagicNumber(in);
         checkVersion(in);
@@ -96,9 +118,10 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
         byte msgType = in.readByte();
         byte codecType = in.readByte();
         byte compressType = in.readByte();
-        int requestId = in.readInt();
+        long requestId = in.readLong();
         RpcMessage rpcMsg = RpcMessage.builder()
                 .codec(codecType)
+                .compress(compressType)
                 .requestId(requestId)
                 .messageType(msgType).build();
         if (msgType == RpcConstant.HEARTBEAT_REQUEST_TYPE) {
@@ -109,41 +132,117 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder{
             rpcMsg.setData(RpcConstant.PONG);
             return rpcMsg;
         }
+        if (msgType == RpcConstant.HANDSHAKE_REQUEST_TYPE) {
+            return rpcMsg;
+        }
+        if (msgType == RpcConstant.STREAM_CREDIT_TYPE) {
+            rpcMsg.setData(in.readInt());
+            return rpcMsg;
+        }
         int bodyLength = fullLength - RpcConstant.HEAD_LENGTH;
+        if (msgType == RpcConstant.DICTIONARY_TYPE) {
+            // 保存字典供之后的帧解压使用，字典帧本身不向后传递；
+            // 字典的大小和个数与发送方使用同样的上限，超出时以解码错误失败，连接随之关闭
+            if (bodyLength < 4 || bodyLength - 4 > OutboundDictionaries.MAX_DICTIONARY_SIZE) {
+                throw new CorruptedFrameException("Invalid dictionary length: " + (bodyLength - 4));
+            }
+            int dictionaryId = in.readInt();
+            if (!dictionaries.containsKey(dictionaryId) && dictionaries.size() >= OutboundDictionaries.MAX_DICTIONARIES) {
+                throw new CorruptedFrameException("Too many dictionaries, max: " + OutboundDictionaries.MAX_DICTIONARIES);
+            }
+            byte[] dictionary = new byte[bodyLength - 4];
+            in.readBytes(dictionary);
+            dictionaries.put(dictionaryId, dictionary);
+            return null;
+        }
         if (bodyLength > 0) {
-            byte[] content = new byte[bodyLength];
-            in.readBytes(content);
-            // 对消息内容进行解压缩
             String compress = CompressTypeEnum.getName(compressType);
             Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class)
                     .getExtension(compress);
-            content = compressor.decompress(content);
-            // 反序列化生成对象
             String codec = SerializationTypeEnum.getName(codecType);
             log.info("codec name: [{}]", codec);
             Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
                     .getExtension(codec);
-            if (msgType == RpcConstant.REQUEST_TYPE) {
-                RpcRequest data = serializer.deserialize(content, RpcRequest.class);
-                rpcMsg.setData(data);
-            } else {
-                RpcResponse data = serializer.deserialize(content, RpcResponse.class);
-                rpcMsg.setData(data);
+            // 直接在帧 ByteBuf 上边解压边反序列化，不再拷贝出中间字节数组
+            ByteBufInputStream bodyIn = new ByteBufInputStream(in, bodyLength);
+            try (InputStream body = compressor instanceof DictionaryCompressor
+                    ? ((DictionaryCompressor) compressor).decompress(bodyIn, dictionaries::get)
+                    : compressor.decompress(bodyIn)) {
+                if (msgType == RpcConstant.BATCH_TYPE) {
+                    // 未压缩时消息体长度即可读的字节数；压缩时解压后的长度同样不能超过一个帧的最大长度
+                    int limit = compressType == CompressTypeEnum.NONE.getCode() ? bodyLength : RpcConstant.MAX_FRAME_LENGTH;
+                    rpcMsg.setData(readBatch(serializer, body, limit, codecType, compressType));
+                } else {
+                    rpcMsg.setData(readBody(serializer, body, msgType, requestId));
+                }
             }
         }
         return rpcMsg;
     }
 
 
-    private void checkMagicNumber(ByteBuf in) {
-        // 读取前4个字节作为魔数，进行比较
-        int len = RpcConstant.MAGIC_NUMBER.length;
-        byte[] magic = new byte[len];
-        in.readBytes(magic);
-        for (int i = 0; i < len; i++) {
-            if (magic[i] != RpcConstant.MAGIC_NUMBER[i]) {
-                throw new IllegalArgumentException("Unknown magic code: " + Arrays.toString(magic));
+    /**
+     * 反序列化消息体，请求ID只在消息头中传输，反序列化后回填
+     */
+    private static Object readBody(Serializer serializer, InputStream body, byte msgType, long requestId) {
+        if (msgType == RpcConstant.REQUEST_TYPE || msgType == RpcConstant.ONEWAY_REQUEST_TYPE) {
+            RpcRequest data = serializer.deserialize(body, RpcRequest.class);
+            data.setRequestId(requestId);
+            return data;
+        }
+        if (msgType == RpcConstant.HANDSHAKE_RESPONSE_TYPE) {
+            return serializer.deserialize(body, MethodTable.class);
+        }
+        RpcResponse<?> data = serializer.deserialize(body, RpcResponse.class);
+        data.setRequestId(requestId);
+        return data;
+    }
+
+    /**
+     * 读取 BATCH 消息体中的多个请求或响应，格式见 {@link RpcMessageEncoder}
+     *
+     * 消息个数和每个消息的长度来自对端，分配内存前先按消息体剩余的字节数校验，格式错误的帧以解码错误失败
+     *
+     * @param limit 消息体（解压后）最多的字节数
+     */
+    private static List<RpcMessage> readBatch(Serializer serializer, InputStream body, int limit, byte codecType,
+                                              byte compressType) throws IOException {
+        DataInputStream in = new DataInputStream(body);
+        int count = in.readInt();
+        int remaining = limit - 4;
+        if (count < 0 || count > remaining / BATCH_ITEM_HEAD_LENGTH) {
+            throw new CorruptedFrameException("Invalid batch item count: " + count);
+        }
+        List<RpcMessage> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte itemType = in.readByte();
+            if (itemType != RpcConstant.REQUEST_TYPE && itemType != RpcConstant.RESPONSE_TYPE) {
+                throw new IllegalArgumentException("Unsupported batch item type: " + itemType);
             }
+            long itemId = in.readLong();
+            int length = in.readInt();
+            remaining -= BATCH_ITEM_HEAD_LENGTH;
+            if (length < 0 || length > remaining) {
+                throw new CorruptedFrameException("Invalid batch item length: " + length);
+            }
+            remaining -= length;
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            items.add(RpcMessage.builder()
+                    .messageType(itemType)
+                    .codec(codecType)
+                    .compress(compressType)
+                    .requestId(itemId)
+                    .data(readBody(serializer, new ByteArrayInputStream(bytes), itemType, itemId)).build());
+        }
+        return items;
+    }
+
+    private void checkMagicNumber(ByteBuf in) {
+        // 读取前4个字节组成的 int 作为魔数，进行比较
+        int magic = in.readInt();
+        if (magic != RpcConstant.MAGIC_NUMBER_INT) {
+            throw new IllegalArgumentException("Unknown magic code: " + Integer.toHexString(magic));
         }
     }
 
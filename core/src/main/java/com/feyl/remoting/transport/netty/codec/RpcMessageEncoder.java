@@ -1,84 +1,204 @@
 package com.feyl.remoting.transport.netty.codec;
 
+import com.feyl.compress.CompressPolicy;
 import com.feyl.compress.Compressor;
+import com.feyl.compress.dict.CompressionDictionary;
+import com.feyl.compress.dict.DictionaryCompressor;
+import com.feyl.compress.dict.OutboundDictionaries;
 import com.feyl.enums.CompressTypeEnum;
 import com.feyl.enums.SerializationTypeEnum;
 import com.feyl.extension.ExtensionLoader;
 import com.feyl.remoting.constants.RpcConstant;
 import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 /**
  * 根据自定义协议设置的编码器
  *
- *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
- *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
- *   |   magic   code        |version |   full  length      |messageType| codec |compress|    RequestId      |
- *   +-----------------------+--------+---------------------+-----------+-----------+-----------+------------+
- *   |                                                                                                       |
- *   |                                         body                                                          |
- *   |                                                                                                       |
- *   |                                        ... ...                                                        |
- *   +-------------------------------------------------------------------------------------------------------+
+ *   0     1     2     3     4        5     6     7     8         9          10      11     12 ... 19
+ *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+--------+-----------------+
+ *   |   magic   code        |version |   full  length      |messageType| codec |compress|    RequestId    |
+ *   +-----------------------+--------+---------------------+-----------+-------+--------+-----------------+
+ *   |                                                                                                     |
+ *   |                                         body                                                        |
+ *   |                                                                                                     |
+ *   |                                        ... ...                                                      |
+ *   +-----------------------------------------------------------------------------------------------------+
  *  4B  magic code（魔法数）   1B version（版本）    4B full length（消息长度）   1B messageType（消息类型）
- *  1B codec（序列化类型）     1B compress（压缩类型）  4B  requestId（请求的Id）
+ *  1B codec（序列化类型）     1B compress（压缩类型）  8B  requestId（请求的Id，关联请求与响应）
  *  body（object类型数据）
  *
+ *  BATCH 消息的 body 为：4B 消息个数 + 每个消息（1B 消息类型 + 8B 请求ID + 4B 数据长度 + 序列化后的数据），
+ *  多个请求或响应共用一个消息头，整个 body 只压缩一次。
+ *
+ *  STREAM_CREDIT 消息的 body 为 4B 额度，不经过序列化和压缩；STREAM_DATA、STREAM_END 消息的 body 与 RESPONSE 相同。
+ *
  * @author Feyl
  */
 @Slf4j
 public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
 
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+    /**
+     * 逐帧决定是否压缩，编码器与 channel 一一对应，策略状态只在该 channel 的 EventLoop 中访问
+     */
+    private final CompressPolicy compressPolicy = new CompressPolicy();
+
+    /**
+     * 发送方向的压缩字典，与压缩策略一样只在该 channel 的 EventLoop 中访问
+     */
+    private final OutboundDictionaries outboundDictionaries = new OutboundDictionaries();
 
     @Override
+    @SuppressWarnings("unchecked")
     protected void encode(ChannelHandlerContext ctx, RpcMessage msg, ByteBuf out) throws Exception {
+        int startIndex = out.writerIndex();
         try {
-            out.writeBytes(RpcConstant.MAGIC_NUMBER);
-            out.writeByte(RpcConstant.VERSION);
-            // 保留一个4字节长的位置用于写入消息总长度
-            out.writerIndex(out.writerIndex()  + 4);
             byte msgType = msg.getMessageType();
+            // 如果消息不是心跳消息或握手请求那么 full length = head length + body length
+            boolean hasBody = msgType != RpcConstant.HEARTBEAT_REQUEST_TYPE
+                    && msgType != RpcConstant.HEARTBEAT_RESPONSE_TYPE
+                    && msgType != RpcConstant.HANDSHAKE_REQUEST_TYPE
+                    && msgType != RpcConstant.STREAM_CREDIT_TYPE;
+            Compressor compressor = null;
+            String dictionaryKey = null;
+            CompressionDictionary dictionary = null;
+            if (hasBody && msg.getCompress() != CompressTypeEnum.NONE.getCode()) {
+                String compress = CompressTypeEnum.getName(msg.getCompress());
+                compressor = ExtensionLoader.getExtensionLoader(Compressor.class)
+                        .getExtension(compress);
+                if (compressor instanceof DictionaryCompressor) {
+                    dictionaryKey = dictionaryKey(msg);
+                    dictionary = outboundDictionaries.get(dictionaryKey);
+                    // 字典第一次使用前，先在同一个缓冲区中写出一个 DICTIONARY 帧，保证对端先收到字典
+                    if (dictionary != null && !outboundDictionaries.isAnnounced(dictionaryKey)) {
+                        writeDictionaryFrame(out, dictionary);
+                        outboundDictionaries.markAnnounced(dictionaryKey);
+                        startIndex = out.writerIndex();
+                    }
+                }
+            }
+            out.writeInt(RpcConstant.MAGIC_NUMBER_INT);
+            out.writeByte(RpcConstant.VERSION);
+            // 保留一个4字节长的位置用于写入消息总长度，消息体写完后回填
+            int lengthIndex = out.writerIndex();
+            out.writerIndex(lengthIndex + 4);
             out.writeByte(msgType);
             out.writeByte(msg.getCodec());
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement());
-            // 构建 总长度
-            byte[] bodyBytes = null;
-            int length = RpcConstant.HEAD_LENGTH;
-            // 如果消息不是心跳消息那么 full length = head length + body length
-            if (msgType != RpcConstant.HEARTBEAT_REQUEST_TYPE
-                    && msgType != RpcConstant.HEARTBEAT_RESPONSE_TYPE) {
-                // 序列化消息内容
+            // 压缩方式在消息体写完后按实际情况回填
+            int compressIndex = out.writerIndex();
+            out.writeByte(CompressTypeEnum.NONE.getCode());
+            out.writeLong(msg.getRequestId());
+            if (msgType == RpcConstant.STREAM_CREDIT_TYPE) {
+                // 额度只有 4 个字节，不经过序列化和压缩
+                out.writeInt((Integer) msg.getData());
+            } else if (hasBody) {
                 String codec = SerializationTypeEnum.getName(msg.getCodec());
                 log.info("codec name:[{}]", codec);
                 Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
                         .getExtension(codec);
-                bodyBytes = serializer.serialize(msg.getData());
-                // 对序列化后的消息进行压缩
-                String compress = CompressTypeEnum.getName(msg.getCompress());
-                Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class)
-                        .getExtension(compress);
-                bodyBytes = compressor.compress(bodyBytes);
-                length += bodyBytes.length;
+                // 序列化结果直接写入出站 ByteBuf，不再产生中间字节数组
+                int bodyIndex = out.writerIndex();
+                if (msgType == RpcConstant.BATCH_TYPE) {
+                    writeBatch(serializer, (List<RpcMessage>) msg.getData(), out);
+                } else {
+                    serializer.serialize(msg.getData(), new ByteBufOutputStream(out));
+                }
+                int rawLength = out.writerIndex() - bodyIndex;
+                if (dictionaryKey != null && dictionary == null) {
+                    outboundDictionaries.sample(dictionaryKey, out, bodyIndex, rawLength);
+                }
+                if (compressor != null && compressPolicy.shouldCompress(msg.getCompress(), rawLength)) {
+                    out.setByte(compressIndex, compress(ctx, out, bodyIndex, rawLength, msg.getCompress(), compressor, dictionary));
+                }
             }
+            // 回填 full length
+            out.setInt(lengthIndex, out.writerIndex() - startIndex);
+        } catch (Exception e) {
+            // 丢弃已写入的半个帧，避免对端解码错位
+            out.writerIndex(startIndex);
+            log.error("Encode request error!", e);
+        }
+    }
 
-            if (bodyBytes != null) {
-                out.writeBytes(bodyBytes);
+    /**
+     * 将已写入 out 的消息体压缩到池化的临时缓冲区，只有压缩后确实变小才用压缩结果替换消息体
+     *
+     * @return 消息体实际使用的压缩方式，写入消息头
+     */
+    private byte compress(ChannelHandlerContext ctx, ByteBuf out, int bodyIndex, int rawLength, byte compressType,
+                          Compressor compressor, CompressionDictionary dictionary) throws IOException {
+        ByteBuf compressed = ctx.alloc().buffer(rawLength);
+        try {
+            ByteBufOutputStream compressedBuf = new ByteBufOutputStream(compressed);
+            try (OutputStream compressedOut = dictionary == null ? compressor.compress(compressedBuf)
+                    : ((DictionaryCompressor) compressor).compress(compressedBuf, dictionary)) {
+                out.getBytes(bodyIndex, compressedOut, rawLength);
+            }
+            int compressedLength = compressed.readableBytes();
+            compressPolicy.record(compressType, rawLength, compressedLength);
+            if (compressedLength >= rawLength) {
+                return CompressTypeEnum.NONE.getCode();
             }
+            out.writerIndex(bodyIndex);
+            out.writeBytes(compressed);
+            return compressType;
+        } finally {
+            compressed.release();
+        }
+    }
 
-            int writeIndex = out.writerIndex();
-            out.writerIndex(writeIndex - length + RpcConstant.MAGIC_NUMBER.length + 1);
-            out.writeInt(length);
-            out.writerIndex(writeIndex);
-        } catch (Exception e) {
-            log.error("Encode request error!", e);
+    /**
+     * 写出 BATCH 消息的 body，每个消息的请求ID写在各自的数据之前
+     */
+    private static void writeBatch(Serializer serializer, List<RpcMessage> items, ByteBuf out) {
+        out.writeInt(items.size());
+        ByteBufOutputStream itemOut = new ByteBufOutputStream(out);
+        for (RpcMessage item : items) {
+            out.writeByte(item.getMessageType());
+            out.writeLong(item.getRequestId());
+            // 数据长度在数据写完后回填
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            serializer.serialize(item.getData(), itemOut);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    /**
+     * 写出一个 DICTIONARY 帧，消息体为：4B 字典 id + 字典内容
+     */
+    private void writeDictionaryFrame(ByteBuf out, CompressionDictionary dictionary) {
+        byte[] bytes = dictionary.getBytes();
+        out.writeInt(RpcConstant.MAGIC_NUMBER_INT);
+        out.writeByte(RpcConstant.VERSION);
+        out.writeInt(RpcConstant.HEAD_LENGTH + 4 + bytes.length);
+        out.writeByte(RpcConstant.DICTIONARY_TYPE);
+        out.writeByte(0);
+        out.writeByte(CompressTypeEnum.NONE.getCode());
+        out.writeLong(0);
+        out.writeInt(dictionary.getId());
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * 请求按服务（interface name + group + version）训练字典，其他消息按消息类型训练字典
+     */
+    private static String dictionaryKey(RpcMessage msg) {
+        if (msg.getData() instanceof RpcRequest) {
+            RpcRequest rpcRequest = (RpcRequest) msg.getData();
+            // 使用方法ID的请求不再携带服务名，按方法区分字典
+            return rpcRequest.getMethodId() != 0 ? "#" + rpcRequest.getMethodId() : rpcRequest.getRpcServiceName();
         }
+        return String.valueOf(msg.getMessageType());
     }
 }
@@ -0,0 +1,57 @@
+package com.feyl.remoting.transport.netty.flush;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并 flush 的统计：flush 次数、写出的帧数以及单次 flush 的最大帧数
+ *
+ * 所有 channel 共用一个实例（通过 {@link com.feyl.factory.SingletonFactory} 获取）。
+ *
+ * @author Feyl
+ */
+public class FlushMetrics {
+
+    private final LongAdder flushes = new LongAdder();
+
+    private final LongAdder frames = new LongAdder();
+
+    private final LongAccumulator maxFramesPerFlush = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次 flush
+     *
+     * @param frameCount 本次 flush 写出的帧数
+     */
+    public void record(int frameCount) {
+        flushes.increment();
+        frames.add(frameCount);
+        maxFramesPerFlush.accumulate(frameCount);
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    public long getMaxFramesPerFlush() {
+        return maxFramesPerFlush.get();
+    }
+
+    /**
+     * 平均每次 flush 写出的帧数，即每次系统调用平均发送的消息数
+     */
+    public double getFramesPerFlush() {
+        long flushCount = getFlushCount();
+        return flushCount == 0 ? 0 : (double) getFrameCount() / flushCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("flushes: %d, frames: %d, frames/flush: %.2f, max frames/flush: %d",
+                getFlushCount(), getFrameCount(), getFramesPerFlush(), getMaxFramesPerFlush());
+    }
+}
@@ -0,0 +1,223 @@
+package com.feyl.remoting.transport.netty.flush;
+
+import com.feyl.enums.FlushModeEnum;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.factory.SingletonFactory;
+import com.feyl.utils.RpcConfigUtil;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并 flush，减少系统调用
+ *
+ * 客户端发送请求、服务端返回响应时每条消息都会 writeAndFlush，每次 flush 都是一次 write 系统调用。
+ * 该处理器放在 pipeline 的最前面（最靠近 socket），拦截上层的 flush，只让 write 正常通过：
+ *  - tick 模式：把 flush 推迟到当前 EventLoop 任务队列的末尾执行，同一次循环中其他线程提交的写操作会一起 flush；
+ *    在读事件中触发的 flush 推迟到 channelReadComplete；
+ *  - window 模式：第一次 flush 之后等待 rpc.flush.window.micros 微秒再 flush，以少量延迟换取更大的批量。
+ *
+ * channel 关闭、变为不可写或处理器被移除时会立即 flush 尚未发出的消息。
+ * 所有方法都在 channel 的 EventLoop 中执行，因此无需同步。
+ * 所有 channel 的合并效果汇总在 {@link #getMetrics()} 中。
+ *
+ * 与 Netty 自带的 {@link io.netty.handler.flush.FlushConsolidationHandler} 不同，这里支持按时间窗口合并，并记录合并统计。
+ *
+ * @author Feyl
+ */
+@Slf4j
+public class RpcFlushConsolidationHandler extends ChannelDuplexHandler {
+
+    private static final long DEFAULT_WINDOW_MICROS = 50;
+
+    private static final FlushModeEnum FLUSH_MODE = resolveFlushMode();
+
+    private static final long WINDOW_MICROS = RpcConfigUtil.getLong(RpcConfigEnum.FLUSH_WINDOW_MICROS, DEFAULT_WINDOW_MICROS);
+
+    private final FlushMetrics flushMetrics = getMetrics();
+
+    private final FlushModeEnum flushMode;
+
+    private final long windowMicros;
+
+    private ChannelHandlerContext ctx;
+
+    /**
+     * 是否正在处理读事件（channelRead 与 channelReadComplete 之间）
+     */
+    private boolean readInProgress;
+
+    /**
+     * 是否有被推迟的 flush
+     */
+    private boolean flushPending;
+
+    /**
+     * 推迟的 flush 是否已经提交到 EventLoop
+     */
+    private boolean flushScheduled;
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * 上次 flush 之后写入的帧数
+     */
+    private int pendingFrames;
+
+    private final Runnable flushTask = () -> {
+        flushScheduled = false;
+        scheduledFlush = null;
+        if (flushPending) {
+            flushNow();
+        }
+    };
+
+    public RpcFlushConsolidationHandler() {
+        this(FLUSH_MODE, WINDOW_MICROS);
+    }
+
+    RpcFlushConsolidationHandler(FlushModeEnum flushMode, long windowMicros) {
+        this.flushMode = flushMode;
+        this.windowMicros = windowMicros;
+    }
+
+    /**
+     * 所有 channel 共用的合并 flush 统计
+     */
+    public static FlushMetrics getMetrics() {
+        return SingletonFactory.getInstance(FlushMetrics.class);
+    }
+
+    /**
+     * 是否配置了合并 flush（rpc.flush.mode 不为 off）
+     */
+    public static boolean isEnabled() {
+        return FLUSH_MODE != FlushModeEnum.OFF;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        pendingFrames++;
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (flushMode == FlushModeEnum.OFF) {
+            flushNow();
+            return;
+        }
+        flushPending = true;
+        // 读事件中的 flush 在 channelReadComplete 时统一处理
+        if (!readInProgress) {
+            scheduleFlush();
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        if (flushPending) {
+            if (flushMode == FlushModeEnum.WINDOW) {
+                scheduleFlush();
+            } else {
+                flushNow();
+            }
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // 出站缓冲区已满时不再等待，尽快把数据写到 socket
+        if (!ctx.channel().isWritable() && flushPending) {
+            flushNow();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        log.debug("Flush metrics when channel [{}] inactive: [{}]", ctx.channel().remoteAddress(), flushMetrics);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        if (flushMode == FlushModeEnum.WINDOW) {
+            scheduledFlush = ctx.executor().schedule(flushTask, windowMicros, TimeUnit.MICROSECONDS);
+        } else {
+            ctx.executor().execute(flushTask);
+        }
+    }
+
+    private void flushIfPending() {
+        if (flushPending) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        flushScheduled = false;
+        flushPending = false;
+        if (pendingFrames > 0) {
+            flushMetrics.record(pendingFrames);
+            pendingFrames = 0;
+        }
+        ctx.flush();
+    }
+
+    private static FlushModeEnum resolveFlushMode() {
+        String name = RpcConfigUtil.getString(RpcConfigEnum.FLUSH_MODE, FlushModeEnum.OFF.getName());
+        FlushModeEnum flushMode = FlushModeEnum.fromName(name);
+        if (flushMode == null) {
+            throw new IllegalArgumentException("Unknown flush mode: " + name);
+        }
+        return flushMode;
+    }
+}
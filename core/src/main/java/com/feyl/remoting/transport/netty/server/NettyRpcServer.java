@@ -2,27 +2,31 @@ package com.feyl.remoting.transport.netty.server;
 
 import com.feyl.config.CustomShutdownHook;
 import com.feyl.config.RpcServiceConfig;
+import com.feyl.enums.RpcConfigEnum;
 import com.feyl.factory.SingletonFactory;
 import com.feyl.provider.ServiceProvider;
 import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.transport.netty.NettyTransport;
 import com.feyl.remoting.transport.netty.codec.RpcMessageDecoder;
 import com.feyl.remoting.transport.netty.codec.RpcMessageEncoder;
-import com.feyl.utils.RuntimeUtil;
-import com.feyl.utils.threadpool.ThreadPoolUtil;
+import com.feyl.remoting.transport.netty.flush.RpcFlushConsolidationHandler;
+import com.feyl.utils.RpcConfigUtil;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -38,6 +42,9 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class NettyRpcServer {
 
+    /**
+     * 默认端口，可以通过 rpc.server.port 修改
+     */
     public static final int PORT = 9998;
 
     private final ServiceProvider serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
@@ -48,17 +55,20 @@ public class NettyRpcServer {
 
     @SneakyThrows
     public void start() {
-        CustomShutdownHook.getCustomShutdownHook().clearAll();
-        String host = InetAddress.getLocalHost().getHostAddress();
-        EventLoopGroup boss = new NioEventLoopGroup(1);
-        EventLoopGroup worker = new NioEventLoopGroup();
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(
-                RuntimeUtil.cpus() * 2,
-                ThreadPoolUtil.createThreadFactory("service-handler-group", false));
+        String host = RpcConfigUtil.getString(RpcConfigEnum.SERVER_HOST, InetAddress.getLocalHost().getHostAddress());
+        int port = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_PORT, PORT);
+        int acceptors = Math.max(1, RpcConfigUtil.getInt(RpcConfigEnum.SERVER_ACCEPTORS, 1));
+        if (acceptors > 1 && !NettyTransport.isEpoll()) {
+            log.warn("SO_REUSEPORT requires epoll transport, use 1 acceptor instead of [{}]", acceptors);
+            acceptors = 1;
+        }
+        EventLoopGroup boss = NettyTransport.newEventLoopGroup(acceptors);
+        EventLoopGroup worker = NettyTransport.newEventLoopGroup(0);
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
+            // 根据运行环境选择 epoll 或 NIO 传输
+            NettyTransport.configure(bootstrap);
             bootstrap.group(boss, worker)
-                    .channel(NioServerSocketChannel.class)
                     /*
                         TCP 默认开启了 Nagle算法，该算法的作用是尽可能的发送大数据块，减少网络传输。
                         TCP_NODELAY 参数的作用就是控制是否请用 Nagle 算法。
@@ -73,25 +83,56 @@ public class NettyRpcServer {
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) throws Exception {
-                            // 30秒内没有收到客户端的请求就会关闭连接
                             ChannelPipeline p = ch.pipeline();
+                            // 合并 flush 的处理器需要最靠近 socket，放在 pipeline 的最前面
+                            if (RpcFlushConsolidationHandler.isEnabled()) {
+                                p.addLast(new RpcFlushConsolidationHandler());
+                            }
+                            // 30秒内没有收到客户端的请求就会关闭连接
                             p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
                             p.addLast(new RpcMessageEncoder());
                             p.addLast(new RpcMessageDecoder());
-                            p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());
+                            // 处理器在 IO 线程中运行，请求按服务的线程模型分派到业务线程池执行
+                            p.addLast(new NettyRpcServerHandler());
                         }
                     });
-            // 绑定端口，同步等待绑定成功
-            ChannelFuture future = bootstrap.bind(host, PORT).sync();
+            if (acceptors > 1) {
+                // 多个监听 channel 绑定同一端口，由内核把新连接分散到各个 boss 线程
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            // 绑定端口，同步等待绑定成功；端口为 0 时后续监听 channel 绑定第一个 channel 分配到的端口
+            List<Channel> listeners = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                Channel listener = bootstrap.bind(host, port).sync().channel();
+                port = ((InetSocketAddress) listener.localAddress()).getPort();
+                listeners.add(listener);
+            }
+            InetSocketAddress serverAddress = registryAddress(host, port);
+            log.info("Netty server started at [{}:{}] with [{}] acceptor(s), registered as [{}]", host, port, listeners.size(), serverAddress);
+            // 以实际地址注册服务，并在服务端关闭时取消注册
+            serviceProvider.publishAll(serverAddress);
+            CustomShutdownHook.getCustomShutdownHook().clearAll(serverAddress);
             // 等待服务端监听端口关闭
-            future.channel().closeFuture().sync();
+            for (Channel listener : listeners) {
+                listener.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             log.error("开启 Netty 服务端时发生异常：", e);
         } finally {
             log.error("关闭 bossGroup 和 workerGroup");
             boss.shutdownGracefully();
             worker.shutdownGracefully();
-            serviceHandlerGroup.shutdownGracefully();
         }
     }
+
+    /**
+     * 注册到注册中心的地址：绑定通配地址（如 0.0.0.0）时使用本机地址，Socket 服务端同样使用
+     */
+    public static InetSocketAddress registryAddress(String host, int port) throws UnknownHostException {
+        InetAddress address = InetAddress.getByName(host);
+        if (address.isAnyLocalAddress()) {
+            return new InetSocketAddress(InetAddress.getLocalHost().getHostAddress(), port);
+        }
+        return new InetSocketAddress(host, port);
+    }
 }
@@ -1,15 +1,25 @@
 package com.feyl.remoting.transport.netty.server;
 
 import cn.hutool.core.util.ReferenceUtil;
-import com.feyl.enums.CompressTypeEnum;
+import com.feyl.compress.CompressPolicy;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcErrorMessageEnum;
 import com.feyl.enums.RpcResponseCodeEnum;
 import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.exception.RpcException;
 import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.ServiceMethod;
+import com.feyl.provider.ServiceProvider;
+import com.feyl.provider.impl.ZkServiceProviderImpl;
 import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcError;
 import com.feyl.remoting.dto.RpcMessage;
 import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
 import com.feyl.remoting.handler.RpcRequestHandler;
+import com.feyl.remoting.stream.RpcStreamObserver;
+import com.feyl.remoting.transport.netty.BidiStream;
+import com.feyl.utils.RpcConfigUtil;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -19,8 +29,21 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * 自定义服务器的ChannelHandler来处理客户机发送的数据。
+ * 处理器运行在 IO 线程中，RPC请求按服务的线程模型交给 {@link com.feyl.remoting.dispatch.Dispatcher} 分配的线程池执行。
  *
  * 如果继承自 SimpleChannelInboundHandler 的话就不要考虑 ByteBuf 的释放，
  * {@link SimpleChannelInboundHandler} 内部的 channelRead 方法会替你释放 ByteBuf，
@@ -31,10 +54,38 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
+    private static final long DEFAULT_STREAM_TIMEOUT = 10000;
+
     private final RpcRequestHandler rpcRequestHandler;
 
+    private final ServiceProvider serviceProvider;
+
+    /**
+     * 失败响应是否携带服务端异常堆栈
+     */
+    private final boolean errorStackTrace;
+
+    /**
+     * 双向流式调用中向客户端发送消息时等待额度的超时时间（毫秒）
+     */
+    private final long streamTimeout;
+
+    /**
+     * 当前 channel 上进行中的流式响应，key 为请求ID
+     */
+    private final Map<Long, ServerStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * 当前 channel 上进行中的双向流式调用，key 为请求ID
+     */
+    private final Map<Long, BidiStream> bidiStreams = new ConcurrentHashMap<>();
+
     public NettyRpcServerHandler() {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        this.errorStackTrace = RpcConfigUtil.getBoolean(RpcConfigEnum.SERVER_ERROR_STACK_TRACE, false);
+        long timeout = RpcConfigUtil.getLong(RpcConfigEnum.SERVER_STREAM_TIMEOUT, DEFAULT_STREAM_TIMEOUT);
+        this.streamTimeout = timeout > 0 ? timeout : DEFAULT_STREAM_TIMEOUT;
     }
 
     @Override
@@ -43,26 +94,55 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
             if (msg instanceof RpcMessage) {
                 log.info("server receive msg: [{}]", msg);
                 byte msgType = ((RpcMessage) msg).getMessageType();
-                RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+                if (msgType == RpcConstant.REQUEST_TYPE) {
+                    dispatch(ctx, (RpcMessage) msg);
+                    return;
+                }
+                if (msgType == RpcConstant.BATCH_TYPE) {
+                    dispatchBatch(ctx, (RpcMessage) msg);
+                    return;
+                }
+                if (msgType == RpcConstant.ONEWAY_REQUEST_TYPE) {
+                    // 单向请求只执行，不写回响应，执行失败时只记录日志
+                    process(ctx, (RpcRequest) ((RpcMessage) msg).getData());
+                    return;
+                }
+                if (msgType == RpcConstant.STREAM_CREDIT_TYPE) {
+                    long requestId = ((RpcMessage) msg).getRequestId();
+                    int credit = (Integer) ((RpcMessage) msg).getData();
+                    ServerStream stream = streams.get(requestId);
+                    BidiStream bidiStream = stream == null ? bidiStreams.get(requestId) : null;
+                    if (stream != null) {
+                        stream.addCredit(credit);
+                    } else if (bidiStream != null) {
+                        bidiStream.onCredit(credit);
+                    }
+                    return;
+                }
+                if (msgType == RpcConstant.STREAM_DATA_TYPE || msgType == RpcConstant.STREAM_END_TYPE) {
+                    // 双向流式调用中客户端发送的消息或结束
+                    BidiStream bidiStream = bidiStreams.get(((RpcMessage) msg).getRequestId());
+                    RpcResponse<Object> rpcResponse = (RpcResponse<Object>) ((RpcMessage) msg).getData();
+                    if (bidiStream == null) {
+                        return;
+                    }
+                    if (msgType == RpcConstant.STREAM_DATA_TYPE) {
+                        bidiStream.onData(rpcResponse.getData());
+                    } else {
+                        bidiStream.onEnd(rpcResponse);
+                    }
+                    return;
+                }
+                RpcMessage rpcMessage = newMessage((RpcMessage) msg);
                 if (msgType == RpcConstant.HEARTBEAT_REQUEST_TYPE) {
                     rpcMessage.setMessageType(RpcConstant.HEARTBEAT_RESPONSE_TYPE);
                     rpcMessage.setData(RpcConstant.PONG);
+                } else if (msgType == RpcConstant.HANDSHAKE_REQUEST_TYPE) {
+                    // 返回已导出方法的方法表，客户端之后的请求只需携带方法ID
+                    rpcMessage.setMessageType(RpcConstant.HANDSHAKE_RESPONSE_TYPE);
+                    rpcMessage.setData(serviceProvider.getMethodTable());
                 } else {
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-                    // 执行客户端需要执行的目标方法并且返回方法的执行结果
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstant.RESPONSE_TYPE);
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(rpcRequest.getRequestId(), result);
-                        rpcMessage.setData(rpcResponse);
-                    } else {
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writeable now, message dropped");
-                    }
+                    return;
                 }
                 ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
@@ -72,6 +152,227 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 执行请求，响应就绪时写回；流式响应由 {@link ServerStream} 自行写出
+     */
+    private void dispatch(ChannelHandlerContext ctx, RpcMessage msg) {
+        process(ctx, (RpcRequest) msg.getData()).thenAccept(rpcResponse -> {
+            if (rpcResponse != null) {
+                writeResponse(ctx, msg, rpcResponse);
+            }
+        });
+    }
+
+    /**
+     * 执行一批请求，每个请求的响应就绪后尽快写回，不等待同一批中的其他请求；
+     * 同一时刻就绪的响应合并为一个 BATCH 消息写回，见 {@link BatchResponder}
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatchBatch(ChannelHandlerContext ctx, RpcMessage msg) {
+        List<RpcMessage> items = (List<RpcMessage>) msg.getData();
+        BatchResponder responder = new BatchResponder(ctx, msg);
+        for (RpcMessage item : items) {
+            process(ctx, (RpcRequest) item.getData()).thenAccept(rpcResponse -> {
+                if (rpcResponse != null) {
+                    RpcMessage response = newMessage(item);
+                    response.setMessageType(RpcConstant.RESPONSE_TYPE);
+                    response.setData(rpcResponse);
+                    responder.add(response);
+                }
+            });
+        }
+    }
+
+    /**
+     * 按服务方法的线程模型执行请求：direct 在当前 IO 线程中执行，其他提交到对应的业务线程池，
+     * 同一连接的请求可以并行执行，响应通过请求ID与请求对应，不要求按顺序返回
+     *
+     * @return 响应就绪时完成的 future，调用失败时以失败响应完成，不会异常完成；以流式响应返回时以 null 完成
+     */
+    private CompletableFuture<RpcResponse<Object>> process(ChannelHandlerContext ctx, RpcRequest rpcRequest) {
+        ServiceMethod serviceMethod;
+        try {
+            serviceMethod = rpcRequestHandler.getServiceMethod(rpcRequest);
+        } catch (Exception e) {
+            log.error("service method not found: ", e);
+            return CompletableFuture.completedFuture(fail(rpcRequest, RpcResponseCodeEnum.NOT_FOUND, e));
+        }
+        if (serviceMethod.isBidiStream()) {
+            // 在 IO 线程中登记，服务方法返回前到达的客户端消息先排队
+            // 发送方向的初始额度为客户端的接收窗口（没有告知时使用服务端的窗口），同时把服务端的接收窗口告知客户端
+            int window = rpcRequest.getStreamWindow() > 0 ? rpcRequest.getStreamWindow() : BidiStream.WINDOW;
+            BidiStream bidiStream = new BidiStream(rpcRequest.getRequestId(), streamTimeout, errorStackTrace, window);
+            bidiStreams.put(rpcRequest.getRequestId(), bidiStream);
+            bidiStream.attach(ctx.channel(), serviceMethod.getExecutor(),
+                    () -> bidiStreams.remove(rpcRequest.getRequestId(), bidiStream));
+            bidiStream.announceWindow();
+        }
+        Executor executor = serviceMethod.getExecutor();
+        if (executor == null) {
+            return handle(ctx, serviceMethod, rpcRequest);
+        }
+        CompletableFuture<RpcResponse<Object>> responseFuture = new CompletableFuture<>();
+        try {
+            executor.execute(() -> handle(ctx, serviceMethod, rpcRequest).thenAccept(responseFuture::complete));
+        } catch (RejectedExecutionException e) {
+            log.error("service [{}] is busy, request rejected", serviceMethod.getDescriptor().getRpcServiceName());
+            bidiStreams.remove(rpcRequest.getRequestId());
+            responseFuture.complete(fail(rpcRequest, RpcResponseCodeEnum.BUSY, e));
+        }
+        return responseFuture;
+    }
+
+    /**
+     * 执行请求，服务方法返回 CompletableFuture 时在其完成时得到响应，不占用当前线程等待；
+     * 返回 Iterator 或 Stream 时开始流式响应，返回 null
+     */
+    private CompletableFuture<RpcResponse<Object>> handle(ChannelHandlerContext ctx, ServiceMethod serviceMethod,
+                                                          RpcRequest rpcRequest) {
+        if (serviceMethod.isBidiStream()) {
+            return CompletableFuture.completedFuture(startBidiStream(serviceMethod, rpcRequest));
+        }
+        // 执行客户端需要执行的目标方法并且返回方法的执行结果
+        return rpcRequestHandler.handleAsync(serviceMethod, rpcRequest).handle((result, e) -> {
+            if (e == null && ServerStream.isStream(result)) {
+                new ServerStream(ctx, rpcRequest.getRequestId(), result, serviceMethod.getExecutor(), errorStackTrace,
+                        streams, rpcRequest.getStreamWindow()).start();
+                return null;
+            }
+            if (e == null) {
+                log.info("server get result: [{}]", result);
+                return RpcResponse.success(rpcRequest.getRequestId(), result);
+            }
+            log.error("service invoke failed: ", e instanceof CompletionException ? e.getCause() : e);
+            return fail(rpcRequest, RpcResponseCodeEnum.FAIL, e);
+        });
+    }
+
+    /**
+     * 调用双向流式方法：传入向客户端发送消息的 observer，返回的 observer 接收客户端的消息
+     *
+     * @return 调用成功时返回 null，之后的消息都通过流发送；调用失败时返回失败响应
+     */
+    @SuppressWarnings("unchecked")
+    private RpcResponse<Object> startBidiStream(ServiceMethod serviceMethod, RpcRequest rpcRequest) {
+        BidiStream bidiStream = bidiStreams.get(rpcRequest.getRequestId());
+        try {
+            Object inbound = serviceMethod.invoke(new Object[]{bidiStream.outbound()});
+            if (inbound == null) {
+                throw new IllegalStateException("Bidirectional stream method returned null: " + serviceMethod.getMethod());
+            }
+            bidiStream.start((RpcStreamObserver<Object>) inbound);
+            return null;
+        } catch (Throwable e) {
+            log.error("service invoke failed: ", e);
+            bidiStreams.remove(rpcRequest.getRequestId(), bidiStream);
+            return fail(rpcRequest, RpcResponseCodeEnum.FAIL, e);
+        }
+    }
+
+    /**
+     * 创建失败响应，携带服务端异常的类名、信息以及（按配置）异常堆栈
+     */
+    private RpcResponse<Object> fail(RpcRequest rpcRequest, RpcResponseCodeEnum code, Throwable cause) {
+        return RpcResponse.fail(rpcRequest.getRequestId(), code, RpcError.of(cause, errorStackTrace));
+    }
+
+    /**
+     * 写回响应；channel 暂时不可写（例如流式响应占满了出站缓冲区）时照常写入，由 Netty 的出站缓冲区暂存，
+     * 普通调用的响应量有限，不会因为背压而变成失败响应。只有连接已经断开时才丢弃
+     */
+    private void writeResponse(ChannelHandlerContext ctx, RpcMessage msg, RpcResponse<Object> rpcResponse) {
+        if (!ctx.channel().isActive()) {
+            log.error("channel [{}] inactive, response [{}] dropped", ctx.channel(), msg.getRequestId());
+            return;
+        }
+        RpcMessage rpcMessage = newMessage(msg);
+        rpcMessage.setMessageType(RpcConstant.RESPONSE_TYPE);
+        rpcMessage.setData(rpcResponse);
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 收集同一个 BATCH 请求中已经就绪的响应
+     *
+     * 第一个响应就绪时向 EventLoop 提交一次写出，写出前就绪的响应合并为一个 BATCH 消息（只有一个时直接写出该响应），
+     * 之后就绪的响应等待下一次写出。慢请求只影响它自己，不会拖住同一批中的其他请求。
+     */
+    private final class BatchResponder {
+
+        private final ChannelHandlerContext ctx;
+
+        private final RpcMessage msg;
+
+        private final Queue<RpcMessage> ready = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private BatchResponder(ChannelHandlerContext ctx, RpcMessage msg) {
+            this.ctx = ctx;
+            this.msg = msg;
+        }
+
+        private void add(RpcMessage response) {
+            ready.add(response);
+            if (scheduled.compareAndSet(false, true)) {
+                ctx.executor().execute(this::write);
+            }
+        }
+
+        private void write() {
+            scheduled.set(false);
+            List<RpcMessage> responses = new ArrayList<>();
+            RpcMessage response;
+            while ((response = ready.poll()) != null) {
+                responses.add(response);
+            }
+            if (responses.isEmpty()) {
+                return;
+            }
+            RpcMessage rpcMessage = responses.get(0);
+            if (responses.size() > 1) {
+                rpcMessage = newMessage(msg);
+                rpcMessage.setMessageType(RpcConstant.BATCH_TYPE);
+                rpcMessage.setData(responses);
+            }
+            ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+
+    /**
+     * 创建响应消息，响应使用请求的ID，客户端据此找到对应的调用
+     */
+    private static RpcMessage newMessage(RpcMessage msg) {
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setRequestId(msg.getRequestId());
+        rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMessage.setCompress(CompressPolicy.configuredCompressType());
+        return rpcMessage;
+    }
+
+    /**
+     * channel 恢复可写时继续发送因背压暂停的流式响应
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            streams.values().forEach(ServerStream::resume);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接断开时取消该连接上所有进行中的流式响应和双向流式调用
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        streams.values().forEach(ServerStream::cancel);
+        RpcException cause = new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                "channel closed: " + ctx.channel().remoteAddress());
+        bidiStreams.values().forEach(bidiStream -> bidiStream.fail(cause));
+        super.channelInactive(ctx);
+    }
+
     /**
      * 长时间未收到客户端发送的远程调用请求或心跳信号则关闭连接
      */
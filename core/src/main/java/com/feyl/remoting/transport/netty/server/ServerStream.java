@@ -0,0 +1,204 @@
+package com.feyl.remoting.transport.netty.server;
+
+import com.feyl.compress.CompressPolicy;
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.utils.RpcConfigUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.BaseStream;
+
+/**
+ * 服务端的一个流式响应：服务方法返回 {@link Iterator} 或 {@link java.util.stream.Stream} 时，
+ * 逐个取出元素作为 STREAM_DATA 帧发送，取完后发送 STREAM_END 帧，服务方法抛出异常时 STREAM_END 携带失败原因
+ *
+ * 基于额度的流控：初始额度为请求中客户端的接收窗口，每发送一个元素消耗一个额度，客户端消费元素后通过 STREAM_CREDIT 帧归还额度；
+ * 额度用完或 channel 不可写时暂停取元素，收到额度或 channel 恢复可写后继续，服务端不会因为客户端消费慢而堆积元素。
+ * 元素在服务方法的业务线程池中取出（direct 服务在 IO 线程中），同一时刻只有一个线程在取元素。
+ *
+ * @author Feyl
+ */
+@Slf4j
+class ServerStream implements Runnable {
+
+    /**
+     * 客户端没有在请求中告知接收窗口时使用的初始额度
+     */
+    private static final int WINDOW = RpcConfigUtil.getInt(RpcConfigEnum.STREAM_WINDOW, 64);
+
+    private final ChannelHandlerContext ctx;
+
+    private final long requestId;
+
+    private final Iterator<?> iterator;
+
+    /**
+     * 流结束或取消时需要关闭的资源：服务方法返回的 Stream 或者实现了 AutoCloseable 的 Iterator
+     */
+    private final AutoCloseable resource;
+
+    private final Executor executor;
+
+    private final boolean errorStackTrace;
+
+    /**
+     * 所在 channel 上进行中的流式响应，流结束或取消时从中移除
+     */
+    private final Map<Long, ServerStream> streams;
+
+    /**
+     * 还可以发送的元素个数
+     */
+    private final AtomicInteger credit;
+
+    /**
+     * 是否有线程正在取元素；资源关闭后保持为 true，不再取元素
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * @param window 客户端的接收窗口，为 0 时使用服务端配置的窗口
+     */
+    ServerStream(ChannelHandlerContext ctx, long requestId, Object result, Executor executor,
+                 boolean errorStackTrace, Map<Long, ServerStream> streams, int window) {
+        this.ctx = ctx;
+        this.requestId = requestId;
+        this.credit = new AtomicInteger(window > 0 ? window : WINDOW);
+        if (result instanceof BaseStream) {
+            this.iterator = ((BaseStream<?, ?>) result).iterator();
+            this.resource = (BaseStream<?, ?>) result;
+        } else {
+            this.iterator = (Iterator<?>) result;
+            this.resource = result instanceof AutoCloseable ? (AutoCloseable) result : null;
+        }
+        this.executor = executor == null ? ctx.executor() : executor;
+        this.errorStackTrace = errorStackTrace;
+        this.streams = streams;
+    }
+
+    /**
+     * 服务方法的返回值是否需要以流式响应返回
+     */
+    static boolean isStream(Object result) {
+        return result instanceof Iterator || result instanceof BaseStream;
+    }
+
+    void start() {
+        streams.put(requestId, this);
+        resume();
+    }
+
+    /**
+     * 收到客户端归还的额度，额度小于 0 表示客户端取消了该流
+     */
+    void addCredit(int n) {
+        if (n < 0) {
+            cancel();
+            return;
+        }
+        credit.addAndGet(n);
+        resume();
+    }
+
+    /**
+     * 客户端取消或连接断开，不再发送任何帧
+     */
+    void cancel() {
+        closed = true;
+        streams.remove(requestId, this);
+        resume();
+    }
+
+    /**
+     * 有额度且 channel 可写时继续取元素；流已结束时关闭资源
+     */
+    void resume() {
+        if (closed) {
+            if (running.compareAndSet(false, true)) {
+                release();
+            }
+            return;
+        }
+        if (credit.get() <= 0 || !ctx.channel().isWritable() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            log.error("stream [{}] rejected", requestId);
+            running.set(false);
+            end(RpcResponse.fail(requestId, RpcResponseCodeEnum.BUSY, RpcError.of(e, errorStackTrace)));
+            resume();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            int written = 0;
+            while (!closed && credit.get() > 0 && ctx.channel().isWritable()) {
+                if (!iterator.hasNext()) {
+                    end(RpcResponse.success(requestId, null));
+                    break;
+                }
+                ctx.write(newMessage(RpcConstant.STREAM_DATA_TYPE, RpcResponse.success(requestId, iterator.next())));
+                credit.decrementAndGet();
+                written++;
+            }
+            if (written > 0) {
+                ctx.flush();
+            }
+        } catch (Throwable e) {
+            log.error("stream [{}] failed: ", requestId, e);
+            end(RpcResponse.fail(requestId, RpcResponseCodeEnum.FAIL, RpcError.of(e, errorStackTrace)));
+        }
+        running.set(false);
+        // 取元素期间到达的额度、可写事件或取消因 running 被忽略，退出前重新检查
+        resume();
+    }
+
+    /**
+     * 发送 STREAM_END 帧，之前写出的 STREAM_DATA 帧一并 flush
+     */
+    private void end(RpcResponse<Object> rpcResponse) {
+        closed = true;
+        streams.remove(requestId, this);
+        ctx.writeAndFlush(newMessage(RpcConstant.STREAM_END_TYPE, rpcResponse)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private void release() {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception e) {
+            log.error("close stream [{}] failed: ", requestId, e);
+        }
+    }
+
+    private RpcMessage newMessage(byte messageType, RpcResponse<Object> rpcResponse) {
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setRequestId(requestId);
+        rpcMessage.setMessageType(messageType);
+        rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMessage.setCompress(CompressPolicy.configuredCompressType());
+        rpcMessage.setData(rpcResponse);
+        return rpcMessage;
+    }
+}
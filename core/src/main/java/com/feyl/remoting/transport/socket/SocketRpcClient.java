@@ -4,6 +4,7 @@ import com.feyl.exception.RpcException;
 import com.feyl.extension.ExtensionLoader;
 import com.feyl.registry.ServiceDiscovery;
 import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.dto.RpcResponse;
 import com.feyl.remoting.transport.RpcRequestTransport;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -38,8 +39,10 @@ public class SocketRpcClient implements RpcRequestTransport {
             // 通过输出流向服务端发送数据
             oos.writeObject(rpcRequest);
             ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
-            // 通过输入流读取远程调用响应结果
-            return ois.readObject();
+            // 通过输入流读取远程调用响应结果，请求ID不参与序列化，每个连接只有一次调用，直接回填
+            RpcResponse<?> rpcResponse = (RpcResponse<?>) ois.readObject();
+            rpcResponse.setRequestId(rpcRequest.getRequestId());
+            return rpcResponse;
         } catch (IOException | ClassNotFoundException e) {
             throw new RpcException("Socket客户端调用服务失败", e);
         }
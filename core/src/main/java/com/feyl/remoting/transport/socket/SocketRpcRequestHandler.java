@@ -1,9 +1,13 @@
 package com.feyl.remoting.transport.socket;
 
+import com.feyl.enums.RpcConfigEnum;
+import com.feyl.enums.RpcResponseCodeEnum;
 import com.feyl.factory.SingletonFactory;
+import com.feyl.remoting.dto.RpcError;
 import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
 import com.feyl.remoting.handler.RpcRequestHandler;
+import com.feyl.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -34,8 +38,15 @@ public class SocketRpcRequestHandler implements Runnable {
         try (ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
              ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream())) {
             RpcRequest rpcRequest = (RpcRequest) ois.readObject();
-            Object result = rpcRequestHandler.handle(rpcRequest);
-            oos.writeObject(RpcResponse.success(rpcRequest.getRequestId(), result));
+            RpcResponse<Object> rpcResponse;
+            try {
+                rpcResponse = RpcResponse.success(rpcRequest.getRequestId(), rpcRequestHandler.handle(rpcRequest));
+            } catch (Exception e) {
+                log.error("service invoke failed: ", e);
+                rpcResponse = RpcResponse.fail(rpcRequest.getRequestId(), RpcResponseCodeEnum.FAIL,
+                        RpcError.of(e, RpcConfigUtil.getBoolean(RpcConfigEnum.SERVER_ERROR_STACK_TRACE, false)));
+            }
+            oos.writeObject(rpcResponse);
             oos.flush();
         } catch (IOException | ClassNotFoundException e) {
             log.error("occur exception when socket server handling message from client");
@@ -2,9 +2,13 @@ package com.feyl.remoting.transport.socket;
 
 import com.feyl.config.CustomShutdownHook;
 import com.feyl.config.RpcServiceConfig;
+import com.feyl.enums.RpcConfigEnum;
 import com.feyl.factory.SingletonFactory;
 import com.feyl.provider.ServiceProvider;
 import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.dispatch.Dispatcher;
+import com.feyl.remoting.transport.netty.server.NettyRpcServer;
+import com.feyl.utils.RpcConfigUtil;
 import com.feyl.utils.threadpool.ThreadPoolUtil;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,13 +17,14 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
-import static com.feyl.remoting.transport.netty.server.NettyRpcServer.PORT;
-
 /**
  * 基于 Socket 传输 RPC请求 服务端
  *
+ * 与 Netty 服务端一样通过 rpc.server.host、rpc.server.port 配置监听地址
+ *
  * @author Feyl
  */
 @Slf4j
@@ -30,11 +35,17 @@ public class SocketRpcServer {
      */
     private final ExecutorService threadPool;
 
+    /**
+     * 默认线程模型为 virtual 时，每个连接的阻塞读写在一个虚拟线程中执行，否则为 null
+     */
+    private final Executor virtualPool;
+
     private final ServiceProvider serviceProvider;
 
 
     public SocketRpcServer() {
         this.threadPool = ThreadPoolUtil.createCustomThreadPoolIfAbsent("socket-server-rpc-pool");
+        this.virtualPool = SingletonFactory.getInstance(Dispatcher.class).defaultVirtualPool();
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
     }
 
@@ -49,13 +60,18 @@ public class SocketRpcServer {
 
     public void start() {
         try(ServerSocket server = new ServerSocket()) {
-            String host = InetAddress.getLocalHost().getHostAddress();
-            server.bind(new InetSocketAddress(host, PORT));
-            CustomShutdownHook.getCustomShutdownHook().clearAll();
+            String host = RpcConfigUtil.getString(RpcConfigEnum.SERVER_HOST, InetAddress.getLocalHost().getHostAddress());
+            int port = RpcConfigUtil.getInt(RpcConfigEnum.SERVER_PORT, NettyRpcServer.PORT);
+            server.bind(new InetSocketAddress(host, port));
+            // 端口为 0 时以实际分配到的端口注册
+            InetSocketAddress serverAddress = NettyRpcServer.registryAddress(host, server.getLocalPort());
+            log.info("Socket server started at [{}:{}], registered as [{}]", host, server.getLocalPort(), serverAddress);
+            serviceProvider.publishAll(serverAddress);
+            CustomShutdownHook.getCustomShutdownHook().clearAll(serverAddress);
             Socket socket;
             while ((socket = server.accept()) != null) {
                 log.info("Client connected [{}]", socket.getInetAddress());
-                threadPool.execute(new SocketRpcRequestHandler(socket));
+                (virtualPool != null ? virtualPool : threadPool).execute(new SocketRpcRequestHandler(socket));
             }
             threadPool.shutdown();
         } catch (IOException e) {
@@ -1,7 +1,13 @@
 package com.feyl.serialize;
 
+import cn.hutool.core.io.IoUtil;
+import com.feyl.exception.SerializeException;
 import com.feyl.extension.SPI;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * 序列化器接口
  *
@@ -18,6 +24,22 @@ public interface Serializer {
      */
     byte[] serialize(Object obj);
 
+    /**
+     * 序列化到输出流中
+     * 编码器会传入直接写入出站 ByteBuf 的输出流，实现类覆盖该方法即可省去中间字节数组的分配与拷贝；
+     * 默认实现退化为 {@link #serialize(Object)} 后整体写出，保证第三方序列化器无需改动即可使用。
+     *
+     * @param obj 要序列化的对象
+     * @param out 目标输出流，调用方负责关闭
+     */
+    default void serialize(Object obj, OutputStream out) {
+        try {
+            out.write(serialize(obj));
+        } catch (IOException e) {
+            throw new SerializeException("Serialization to stream failed");
+        }
+    }
+
     /**
      * 反序列化
      *
@@ -29,4 +51,17 @@ public interface Serializer {
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
 
+    /**
+     * 从输入流中反序列化
+     * 解码器会传入直接读取入站帧 ByteBuf 的输入流，实现类覆盖该方法即可省去中间字节数组；
+     * 默认实现先读出全部字节再调用 {@link #deserialize(byte[], Class)}。
+     *
+     * @param in    序列化数据的输入流，调用方负责关闭
+     * @param clazz 目标类
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(InputStream in, Class<T> clazz) {
+        return deserialize(IoUtil.readBytes(in, false), clazz);
+    }
+
 }
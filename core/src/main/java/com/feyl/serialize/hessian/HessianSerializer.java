@@ -8,6 +8,8 @@ import com.feyl.serialize.Serializer;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Hessian is a dynamically-typed, binary serialization and
@@ -28,6 +30,17 @@ public class HessianSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, OutputStream out) {
+        try {
+            HessianOutput output = new HessianOutput(out);
+            output.writeObject(obj);
+            output.flush();
+        } catch (IOException e) {
+            throw new SerializeException("Hessian serialization failed");
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
@@ -39,4 +52,15 @@ public class HessianSerializer implements Serializer {
         }
     }
 
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        try {
+            HessianInput input = new HessianInput(in);
+            Object o = input.readObject();
+            return clazz.cast(o);
+        } catch (IOException e) {
+            throw new SerializeException("Hessian deserialization failed");
+        }
+    }
+
 }
@@ -4,12 +4,17 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.feyl.exception.SerializeException;
+import com.feyl.remoting.dto.MethodDescriptor;
+import com.feyl.remoting.dto.MethodTable;
+import com.feyl.remoting.dto.RpcError;
 import com.feyl.remoting.dto.RpcRequest;
 import com.feyl.remoting.dto.RpcResponse;
 import com.feyl.serialize.Serializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Kryo 序列化器
@@ -20,6 +25,8 @@ import java.io.ByteArrayOutputStream;
  */
 public class KryoSerializer implements Serializer {
 
+    private static final int BUFFER_SIZE = 1024 * 4; //4K
+
     /**
      * 由于 Kryo 不是线程安全的。每个线程都应该有自己的 Kryo，Input 和 Output 实例。
      * 所以，使用 ThreadLocal 存放 Kryo 对象
@@ -35,9 +42,22 @@ public class KryoSerializer implements Serializer {
          */
         kryo.register(RpcRequest.class);
         kryo.register(RpcResponse.class);
+        kryo.register(MethodTable.class);
+        kryo.register(MethodDescriptor.class);
+        kryo.register(RpcError.class);
         return kryo;
     });
 
+    /**
+     * 复用线程内的 Output 缓冲区，序列化结果经由缓冲区直接写入目标流
+     */
+    private final ThreadLocal<Output> outputThreadLocal = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE));
+
+    /**
+     * 复用线程内的 Input 缓冲区，直接从源输入流读取数据
+     */
+    private final ThreadLocal<Input> inputThreadLocal = ThreadLocal.withInitial(() -> new Input(BUFFER_SIZE));
+
     @Override
     public byte[] serialize(Object obj) {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -52,6 +72,22 @@ public class KryoSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, OutputStream out) {
+        Output output = outputThreadLocal.get();
+        try {
+            output.setOutputStream(out);
+            Kryo kryo = kryoThreadLocal.get();
+            kryo.writeObject(output, obj);
+            kryoThreadLocal.remove();
+            output.flush();
+        } catch (Exception e) {
+            throw new SerializeException("Kryo serialization failed");
+        } finally {
+            output.setOutputStream(null);
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
@@ -66,4 +102,20 @@ public class KryoSerializer implements Serializer {
         }
     }
 
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        Input input = inputThreadLocal.get();
+        try {
+            input.setInputStream(in);
+            Kryo kryo = kryoThreadLocal.get();
+            Object obj = kryo.readObject(input, clazz);
+            kryoThreadLocal.remove();
+            return clazz.cast(obj);
+        } catch (Exception e) {
+            throw new SerializeException("Kryo deserialization failed");
+        } finally {
+            input.setInputStream(null);
+        }
+    }
+
 }
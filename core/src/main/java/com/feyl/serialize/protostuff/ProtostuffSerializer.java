@@ -1,12 +1,16 @@
 package com.feyl.serialize.protostuff;
 
+import com.feyl.exception.SerializeException;
 import com.feyl.serialize.Serializer;
 import io.protostuff.LinkedBuffer;
-import io.protostuff.ProtobufIOUtil;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * @author Feyl
  */
@@ -30,11 +34,35 @@ public class ProtostuffSerializer implements Serializer {
         return bytes;
     }
 
+    @Override
+    public void serialize(Object obj, OutputStream out) {
+        Schema schema = RuntimeSchema.getSchema(obj.getClass());
+        try {
+            ProtostuffIOUtil.writeTo(out, obj, schema, BUFFER);
+        } catch (IOException e) {
+            throw new SerializeException("Protostuff serialization failed");
+        } finally {
+            BUFFER.clear();
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         Schema<T> schema = RuntimeSchema.getSchema(clazz);
         T obj = schema.newMessage();
-        ProtobufIOUtil.mergeFrom(bytes, obj, schema);
+        ProtostuffIOUtil.mergeFrom(bytes, obj, schema);
+        return obj;
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) {
+        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        T obj = schema.newMessage();
+        try {
+            ProtostuffIOUtil.mergeFrom(in, obj, schema);
+        } catch (IOException e) {
+            throw new SerializeException("Protostuff deserialization failed");
+        }
         return obj;
     }
 }
@@ -1,5 +1,6 @@
 package com.feyl.spring;
 
+import com.feyl.annotation.RpcMethodTimeout;
 import com.feyl.annotation.RpcReference;
 import com.feyl.annotation.RpcService;
 import com.feyl.config.RpcServiceConfig;
@@ -15,6 +16,8 @@ import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 在bean实例化之后，初始化前后，以查看类是否有注解
@@ -52,6 +55,8 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
             RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                     .group(rpcService.group())
                     .version(rpcService.version())
+                    .dispatch(rpcService.dispatch())
+                    .threads(rpcService.threads())
                     .service(bean).build();
             serviceProvider.publishService(rpcServiceConfig);
         }
@@ -70,9 +75,16 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
         for (Field field : declareFields) {
             RpcReference rpcReference = field.getAnnotation(RpcReference.class);
             if (rpcReference != null) {
+                Map<String, Long> methodTimeouts = new HashMap<>();
+                for (RpcMethodTimeout methodTimeout : rpcReference.methodTimeouts()) {
+                    methodTimeouts.put(methodTimeout.method(), methodTimeout.timeout());
+                }
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
+                        .version(rpcReference.version())
+                        .timeout(rpcReference.timeout())
+                        .methodTimeouts(methodTimeouts)
+                        .oneway(rpcReference.oneway()).build();
                 RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcClient, rpcServiceConfig);
                 Object clientProxy = rpcClientProxy.getProxy(field.getType());
                 field.setAccessible(true);
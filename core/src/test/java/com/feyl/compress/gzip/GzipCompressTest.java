@@ -1,7 +1,45 @@
 package com.feyl.compress.gzip;
 
+import cn.hutool.core.io.IoUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
 /**
  * @author Feyl
  */
 public class GzipCompressTest {
+
+    private final byte[] raw = "com.feyl.HelloServicetest1version1hello".concat(new String(new char[200]).replace('\0', 'x'))
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void gzipCompressorTest() {
+        GzipCompressor gzipCompressor = new GzipCompressor();
+        // 复用 Deflater / Inflater 后多次压缩、解压的结果仍然正确
+        for (int i = 0; i < 3; i++) {
+            byte[] compressed = gzipCompressor.compress(raw);
+            assertArrayEquals(raw, gzipCompressor.decompress(compressed));
+        }
+    }
+
+    @Test
+    void shouldBeCompatibleWithJdkGzip() throws IOException {
+        GzipCompressor gzipCompressor = new GzipCompressor();
+        byte[] compressed = gzipCompressor.compress(raw);
+        assertArrayEquals(raw, IoUtil.readBytes(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+            gos.write(raw);
+        }
+        assertArrayEquals(raw, gzipCompressor.decompress(baos.toByteArray()));
+    }
 }
@@ -0,0 +1,37 @@
+package com.feyl.compress.lz4;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Feyl
+ */
+class Lz4CompressorTest {
+
+    @Test
+    void lz4CompressorTest() {
+        byte[] raw = "com.feyl.HelloServicetest1version1hello".concat(new String(new char[200]).replace('\0', 'x'))
+                .getBytes(StandardCharsets.UTF_8);
+        Lz4Compressor lz4Compressor = new Lz4Compressor();
+        byte[] compressed = lz4Compressor.compress(raw);
+        assertArrayEquals(raw, lz4Compressor.decompress(compressed));
+    }
+
+    @Test
+    void malformedInputShouldBeRejected() {
+        Lz4Compressor lz4Compressor = new Lz4Compressor();
+        byte[] compressed = lz4Compressor.compress(new byte[100_000]);
+        // 声明的原始长度超过一帧的上限
+        byte[] oversized = compressed.clone();
+        oversized[0] = 0x7F;
+        assertThrows(RuntimeException.class, () -> lz4Compressor.decompress(oversized));
+        // 压缩块被截断
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(RuntimeException.class, () -> lz4Compressor.decompress(truncated));
+    }
+}
@@ -0,0 +1,22 @@
+package com.feyl.compress.snappy;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * @author Feyl
+ */
+class SnappyCompressorTest {
+
+    @Test
+    void snappyCompressorTest() {
+        byte[] raw = "com.feyl.HelloServicetest1version1hello".concat(new String(new char[200]).replace('\0', 'x'))
+                .getBytes(StandardCharsets.UTF_8);
+        SnappyCompressor snappyCompressor = new SnappyCompressor();
+        byte[] compressed = snappyCompressor.compress(raw);
+        assertArrayEquals(raw, snappyCompressor.decompress(compressed));
+    }
+}
@@ -11,7 +11,6 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 
@@ -31,7 +30,7 @@ class ConsistentHashLoadBalanceTest {
         RpcRequest rpcRequest = RpcRequest.builder()
                 .parameters(demoRpcService.getClass().getTypeParameters())
                 .interfaceName(rpcServiceConfig.getServiceName())
-                .requestId(UUID.randomUUID().toString())
+                .requestId(1L)
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
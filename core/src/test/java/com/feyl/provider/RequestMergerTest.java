@@ -0,0 +1,107 @@
+package com.feyl.provider;
+
+import com.feyl.annotation.RpcBatchable;
+import com.feyl.remoting.dto.MethodDescriptor;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.handler.RpcRequestHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class RequestMergerTest {
+
+    public static class UserServiceImpl {
+
+        private final AtomicInteger bulkCalls = new AtomicInteger();
+
+        private volatile String bulkThread;
+
+        @RpcBatchable(value = "getUsers", windowMicros = 50_000)
+        public String getUser(Long id) {
+            throw new UnsupportedOperationException("should be merged");
+        }
+
+        public List<String> getUsers(List<Long> ids) {
+            bulkCalls.incrementAndGet();
+            bulkThread = Thread.currentThread().getName();
+            List<String> users = new ArrayList<>();
+            for (Long id : ids) {
+                users.add("user-" + id);
+            }
+            return users;
+        }
+
+        @RpcBatchable(value = "getNames", windowMicros = 10_000_000, maxBatchSize = 2)
+        public String getName(Long id) {
+            throw new UnsupportedOperationException("should be merged");
+        }
+
+        public Map<Long, String> getNames(Collection<Long> ids) {
+            bulkCalls.incrementAndGet();
+            Map<Long, String> names = new HashMap<>();
+            for (Long id : ids) {
+                if (id > 0) {
+                    names.put(id, "name-" + id);
+                }
+            }
+            return names;
+        }
+    }
+
+    private final UserServiceImpl userService = new UserServiceImpl();
+
+    private final RpcRequestHandler rpcRequestHandler = new RpcRequestHandler();
+
+    @Test
+    void concurrentRequestsWithinWindowShouldInvokeBulkMethodOnce() throws Exception {
+        ServiceMethod getUser = serviceMethod("getUser");
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            results.add(rpcRequestHandler.handleAsync(getUser, request(id)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals("user-" + (i + 1), results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, userService.bulkCalls.get());
+        // direct 线程模型下窗口结束时不在计时线程中调用服务
+        assertTrue(userService.bulkThread.startsWith("rpc-request-merger-invoker-"));
+    }
+
+    @Test
+    void fullBatchShouldBeInvokedWithoutWaitingForWindow() {
+        ServiceMethod getName = serviceMethod("getName");
+        CompletableFuture<Object> first = rpcRequestHandler.handleAsync(getName, request(1L));
+        CompletableFuture<Object> missing = rpcRequestHandler.handleAsync(getName, request(-1L));
+        // direct 线程模型下在第二个请求的线程中立即调用批量方法
+        assertTrue(first.isDone());
+        assertEquals("name-1", first.join());
+        assertNull(missing.join());
+        assertEquals(1, userService.bulkCalls.get());
+    }
+
+    private ServiceMethod serviceMethod(String name) {
+        try {
+            return new ServiceMethod(new MethodDescriptor(), userService, UserServiceImpl.class.getMethod(name, Long.class), null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RpcRequest request(long id) {
+        return RpcRequest.builder().parameters(new Object[]{id}).build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.feyl.provider;
+
+import com.feyl.remoting.dto.MethodDescriptor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Feyl
+ */
+class ServiceMethodTest {
+
+    interface Calculator {
+        int add(int a, int b);
+
+        String join(String... parts);
+
+        void reset();
+
+        void fail(String message);
+    }
+
+    private static class CalculatorImpl implements Calculator {
+
+        private int resets;
+
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public String join(String... parts) {
+            return String.join("-", parts);
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+        }
+
+        @Override
+        public void fail(String message) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private final CalculatorImpl calculator = new CalculatorImpl();
+
+    @Test
+    void invokerShouldUnboxArgumentsAndBoxResult() throws Throwable {
+        assertEquals(3, serviceMethod("add", int.class, int.class).invoke(new Object[]{1, 2}));
+        assertEquals("a-b", serviceMethod("join", String[].class).invoke(new Object[]{new String[]{"a", "b"}}));
+    }
+
+    @Test
+    void voidMethodShouldReturnNull() throws Throwable {
+        assertNull(serviceMethod("reset").invoke(null));
+        assertEquals(1, calculator.resets);
+    }
+
+    @Test
+    void exceptionShouldNotBeWrapped() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> serviceMethod("fail", String.class).invoke(new Object[]{"boom"}));
+        assertEquals("boom", e.getMessage());
+    }
+
+    private ServiceMethod serviceMethod(String name, Class<?>... paramTypes) throws NoSuchMethodException {
+        return new ServiceMethod(new MethodDescriptor(), calculator, CalculatorImpl.class.getMethod(name, paramTypes), null);
+    }
+}
@@ -0,0 +1,158 @@
+package com.feyl.proxy;
+
+import com.feyl.annotation.Oneway;
+import com.feyl.annotation.RpcAsync;
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class RpcClientProxyTest {
+
+    interface EchoService {
+        String echo(String message);
+    }
+
+    @RpcAsync(EchoService.class)
+    interface EchoServiceAsync {
+        CompletableFuture<String> echo(String message);
+    }
+
+    public interface Calculator {
+        long add(int a, long b);
+
+        void reset();
+
+        CompletableFuture<String> describe(String name, int[] values);
+    }
+
+    public interface AuditService {
+        @Oneway
+        void audit(String event);
+
+        @Oneway
+        CompletableFuture<Void> trackedAudit(String event);
+
+        void record(String event);
+
+        String query(String event);
+    }
+
+    private volatile RpcRequest sent;
+
+    private final CompletableFuture<RpcResponse<Object>> transportFuture = new CompletableFuture<>();
+
+    private final RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcRequest -> {
+        sent = rpcRequest;
+        return transportFuture;
+    });
+
+    @Test
+    void asyncInterfaceShouldReturnWithoutBlocking() {
+        EchoServiceAsync echoService = rpcClientProxy.getProxy(EchoServiceAsync.class);
+        CompletableFuture<String> result = echoService.echo("hello");
+        assertFalse(result.isDone());
+        // 请求按同步接口的服务名发送
+        assertEquals(EchoService.class.getName(), sent.getInterfaceName());
+        transportFuture.complete(RpcResponse.success(sent.getRequestId(), "hello"));
+        assertEquals("hello", result.join());
+    }
+
+    @Test
+    void syncInterfaceShouldWaitForResponse() {
+        EchoService echoService = rpcClientProxy.getProxy(EchoService.class);
+        CompletableFuture.runAsync(() -> {
+            while (sent == null) {
+                Thread.yield();
+            }
+            transportFuture.complete(RpcResponse.success(sent.getRequestId(), "hello"));
+        });
+        assertEquals("hello", echoService.echo("hello"));
+    }
+
+    @Test
+    void remoteErrorShouldBeRethrown() {
+        RpcError error = RpcError.of(new IllegalArgumentException("bad message"), false);
+        EchoService echoService = new RpcClientProxy(rpcRequest -> CompletableFuture.completedFuture(
+                RpcResponse.fail(rpcRequest.getRequestId(), RpcResponseCodeEnum.FAIL, error))).getProxy(EchoService.class);
+        RpcRemoteException e = assertThrows(RpcRemoteException.class, () -> echoService.echo("hello"));
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), e.getCode());
+        assertEquals(IllegalArgumentException.class.getName(), e.getExceptionClass());
+        assertEquals("bad message", e.getRemoteMessage());
+        assertNull(e.getRemoteStackTrace());
+    }
+
+    @Test
+    void onewayCallShouldReturnWithoutWaitingForResponse() {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        AuditService auditService = new RpcClientProxy(rpcRequest -> {
+            sent = rpcRequest;
+            return rpcRequest.isOneway() ? written : transportFuture;
+        }).getProxy(AuditService.class);
+
+        auditService.audit("login");
+        assertTrue(sent.isOneway());
+        CompletableFuture<Void> tracked = auditService.trackedAudit("logout");
+        assertFalse(tracked.isDone());
+        written.complete(null);
+        assertTrue(tracked.isDone());
+    }
+
+    @Test
+    void referenceOnewayShouldOnlyApplyToVoidMethods() {
+        RpcServiceConfig config = RpcServiceConfig.builder().group("").version("").oneway(true).build();
+        AuditService auditService = new RpcClientProxy(rpcRequest -> {
+            sent = rpcRequest;
+            return CompletableFuture.completedFuture(RpcResponse.success(rpcRequest.getRequestId(), "result"));
+        }, config).getStub(AuditService.class);
+
+        auditService.record("login");
+        assertTrue(sent.isOneway());
+        assertEquals("result", auditService.query("login"));
+        assertFalse(sent.isOneway());
+    }
+
+    @Test
+    void stubShouldBoxArgumentsAndUnboxResult() {
+        RpcClientProxy stubProxy = new RpcClientProxy(rpcRequest -> {
+            sent = rpcRequest;
+            Object[] args = rpcRequest.getParameters();
+            Object data;
+            if ("add".equals(rpcRequest.getMethodName())) {
+                data = (Integer) args[0] + (Long) args[1];
+            } else if ("describe".equals(rpcRequest.getMethodName())) {
+                data = args[0] + Arrays.toString((int[]) args[1]);
+            } else {
+                data = null;
+            }
+            return CompletableFuture.completedFuture(RpcResponse.success(rpcRequest.getRequestId(), data));
+        });
+        Calculator calculator = stubProxy.getStub(Calculator.class);
+        assertFalse(calculator instanceof java.lang.reflect.Proxy);
+
+        assertEquals(3L, calculator.add(1, 2L));
+        assertEquals(Calculator.class.getName(), sent.getInterfaceName());
+        assertTrue(Arrays.equals(new Class<?>[]{int.class, long.class}, sent.getParamTypes()));
+
+        calculator.reset();
+        assertEquals("reset", sent.getMethodName());
+        assertNull(sent.getParameters());
+
+        assertEquals("sum[1, 2]", calculator.describe("sum", new int[]{1, 2}).join());
+    }
+}
@@ -9,7 +9,6 @@ import com.feyl.remoting.dto.RpcRequest;
 import org.junit.jupiter.api.Test;
 
 import java.net.InetSocketAddress;
-import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -31,7 +30,7 @@ class ZkServiceRegistryImplTest {
 //                .parameters(args)
                 .interfaceName(rpcServiceConfig.getServiceName())
 //                .paramTypes(method.getParameterTypes())
-                .requestId(UUID.randomUUID().toString())
+                .requestId(1L)
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
@@ -0,0 +1,111 @@
+package com.feyl.remoting.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class DispatcherTest {
+
+    private final Dispatcher dispatcher = new Dispatcher();
+
+    @Test
+    void servicesShouldShareOrIsolatePools() {
+        assertNull(dispatcher.executor("directService", "direct", 0));
+        Executor shared = dispatcher.executor("sharedService1", "shared", 0);
+        assertSame(shared, dispatcher.executor("sharedService2", "", 0));
+        Executor isolated = dispatcher.executor("isolatedService", "isolated", 1);
+        assertNotSame(shared, isolated);
+        assertSame(isolated, dispatcher.getPool("rpc-dispatch-isolatedService"));
+    }
+
+    @Test
+    void poolShouldReportQueueDepth() throws InterruptedException {
+        DispatchPool pool = (DispatchPool) dispatcher.executor("queuedService", "isolated", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        pool.execute(() -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        });
+        pool.execute(finished::countDown);
+        pool.execute(finished::countDown);
+        started.await();
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(2, pool.getQueueDepth());
+        release.countDown();
+        finished.await();
+        assertEquals(0, pool.getQueueDepth());
+    }
+
+    @Test
+    void virtualModeShouldCapConcurrencyOrFallBackToShared() throws InterruptedException {
+        Executor executor = dispatcher.executor("virtualService", "virtual", 0);
+        if (!VirtualThreads.isAvailable()) {
+            assertSame(dispatcher.executor("sharedService", "shared", 0), executor);
+            return;
+        }
+        assertTrue(executor instanceof VirtualThreadDispatchPool);
+        VirtualThreadDispatchPool pool = new VirtualThreadDispatchPool("virtual-test", VirtualThreads.factory("virtual-test"), 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        pool.execute(() -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        });
+        started.await();
+        pool.execute(finished::countDown);
+        // 第二个请求已经在虚拟线程中启动，等待许可
+        while (pool.getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, pool.getActiveCount());
+        release.countDown();
+        finished.await();
+    }
+
+    @Test
+    void virtualPoolShouldRejectBeyondQueueCapacity() throws InterruptedException {
+        // 限流逻辑与线程类型无关，用平台线程验证，不依赖 JVM 是否支持虚拟线程
+        VirtualThreadDispatchPool pool = new VirtualThreadDispatchPool("bounded-test", Executors.defaultThreadFactory(), 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        pool.execute(() -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        });
+        started.await();
+        pool.execute(finished::countDown);
+        // 并发上限和队列都已占满
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(finished::countDown));
+        assertEquals(1, pool.getRejectedCount());
+        release.countDown();
+        finished.await();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
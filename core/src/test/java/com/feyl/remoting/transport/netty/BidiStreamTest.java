@@ -0,0 +1,164 @@
+package com.feyl.remoting.transport.netty;
+
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.stream.RpcStreamObserver;
+import com.feyl.remoting.transport.netty.client.NettyRpcClientHandler;
+import com.feyl.remoting.transport.netty.client.RpcBidiCall;
+import com.feyl.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Feyl
+ */
+class BidiStreamTest {
+
+    public interface IngestService {
+        RpcStreamObserver<String> ingest(RpcStreamObserver<Integer> acks);
+    }
+
+    public static class IngestServiceImpl implements IngestService {
+
+        @Override
+        public RpcStreamObserver<String> ingest(RpcStreamObserver<Integer> acks) {
+            return new RpcStreamObserver<String>() {
+
+                private int count;
+
+                @Override
+                public void onNext(String record) {
+                    if ("bad".equals(record)) {
+                        throw new IllegalArgumentException("bad record");
+                    }
+                    acks.onNext(++count);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    // 客户端半关闭后服务端仍然可以继续发送
+                    acks.onNext(-count);
+                    acks.onCompleted();
+                }
+            };
+        }
+    }
+
+    private final EventLoopGroup group = new DefaultEventLoopGroup(2);
+
+    private final BlockingQueue<Object> acks = new LinkedBlockingQueue<>();
+
+    private final CompletableFuture<Throwable> done = new CompletableFuture<>();
+
+    @BeforeAll
+    static void addService() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new IngestServiceImpl()).group("").version("").dispatch("shared").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    void recordsBeyondWindowShouldBeAckedOnSameCall() throws Exception {
+        Channel channel = connect("bidi-test");
+        RpcStreamObserver<Object> records = open(channel, 1L);
+        for (int i = 0; i < 500; i++) {
+            records.onNext("record-" + i);
+        }
+        records.onCompleted();
+
+        assertNull(done.get(5, TimeUnit.SECONDS));
+        assertEquals(501, acks.size());
+        for (int i = 1; i <= 500; i++) {
+            assertEquals(i, acks.poll());
+        }
+        assertEquals(-500, acks.poll());
+        channel.close().sync();
+    }
+
+    @Test
+    void serverFailureShouldEndBothDirections() throws Exception {
+        Channel channel = connect("bidi-failure-test");
+        RpcStreamObserver<Object> records = open(channel, 1L);
+        records.onNext("good");
+        records.onNext("bad");
+
+        Throwable cause = done.get(5, TimeUnit.SECONDS);
+        assertEquals(IllegalArgumentException.class.getName(), ((RpcRemoteException) cause).getExceptionClass());
+        assertEquals(1, acks.poll());
+        assertThrows(IllegalStateException.class, () -> records.onNext("late"));
+        channel.close().sync();
+    }
+
+    private RpcStreamObserver<Object> open(Channel channel, long requestId) {
+        BidiStream stream = new BidiStream(requestId, 5000, false, 0);
+        stream.start(new RpcStreamObserver<Object>() {
+            @Override
+            public void onNext(Object value) {
+                acks.add(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.complete(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(null);
+            }
+        });
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .requestId(requestId)
+                .interfaceName(IngestService.class.getCanonicalName())
+                .methodName("ingest")
+                .paramTypes(new Class<?>[]{RpcStreamObserver.class})
+                .parameters(new Object[1])
+                .streamWindow(BidiStream.WINDOW)
+                .group("")
+                .version("").build();
+        channel.writeAndFlush(new RpcBidiCall(RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(rpcRequest).build(), stream));
+        return stream.outbound();
+    }
+
+    private Channel connect(String name) throws InterruptedException {
+        LocalAddress address = new LocalAddress(name);
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new NettyRpcServerHandler()).bind(address).sync();
+        return new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new NettyRpcClientHandler()).connect(address).sync().channel();
+    }
+}
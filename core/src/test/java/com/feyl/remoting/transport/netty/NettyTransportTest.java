@@ -0,0 +1,41 @@
+package com.feyl.remoting.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class NettyTransportTest {
+
+    @Test
+    void selectedTransportShouldConnect() throws Exception {
+        EventLoopGroup group = NettyTransport.newEventLoopGroup(1);
+        try {
+            ServerBootstrap serverBootstrap = NettyTransport.configure(new ServerBootstrap())
+                    .group(group)
+                    .childHandler(new ChannelInboundHandlerAdapter());
+            Channel server = serverBootstrap.bind("127.0.0.1", 0).sync().channel();
+            Bootstrap bootstrap = NettyTransport.configure(new Bootstrap())
+                    .group(group)
+                    .handler(new ChannelInboundHandlerAdapter());
+            Channel client = bootstrap.connect((InetSocketAddress) server.localAddress()).sync().channel();
+            assertTrue(client.isActive());
+            assertEquals(NettyTransport.socketChannelClass(), client.getClass());
+            assertEquals(NettyTransport.serverChannelClass(), server.getClass());
+            client.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcMessage;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+@SuppressWarnings("unchecked")
+class CallCoalescingHandlerTest {
+
+    @Test
+    void requestsWithinWindowShouldBeWrittenAsOneBatch() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new CallCoalescingHandler(1000, 64));
+        ChannelFuture first = channel.writeAndFlush(request(1L));
+        ChannelFuture second = channel.writeAndFlush(request(2L));
+        // 心跳等其他消息不参与合并
+        RpcMessage heartbeat = RpcMessage.builder().messageType(RpcConstant.HEARTBEAT_REQUEST_TYPE).build();
+        channel.writeAndFlush(heartbeat);
+        assertSame(heartbeat, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(first.isDone());
+
+        Thread.sleep(2);
+        channel.runScheduledPendingTasks();
+        RpcMessage batch = channel.readOutbound();
+        assertEquals(RpcConstant.BATCH_TYPE, batch.getMessageType());
+        List<RpcMessage> items = (List<RpcMessage>) batch.getData();
+        assertEquals(2, items.size());
+        assertEquals(2L, items.get(1).getRequestId());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+    }
+
+    @Test
+    void fullBatchShouldBeWrittenWithoutWaiting() {
+        EmbeddedChannel channel = new EmbeddedChannel(new CallCoalescingHandler(1_000_000, 2));
+        channel.writeAndFlush(request(1L));
+        channel.writeAndFlush(request(2L));
+        RpcMessage batch = channel.readOutbound();
+        assertEquals(2, ((List<RpcMessage>) batch.getData()).size());
+
+        // 窗口内只有一个请求时按原样写出
+        channel.writeAndFlush(request(3L));
+        channel.close();
+        RpcMessage single = channel.readOutbound();
+        assertEquals(RpcConstant.REQUEST_TYPE, single.getMessageType());
+        assertEquals(3L, single.getRequestId());
+    }
+
+    private static RpcMessage request(long requestId) {
+        return RpcMessage.builder().requestId(requestId).messageType(RpcConstant.REQUEST_TYPE).build();
+    }
+}
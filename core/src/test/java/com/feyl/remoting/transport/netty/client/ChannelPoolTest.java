@@ -0,0 +1,120 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.enums.ChannelSelectEnum;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class ChannelPoolTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9998);
+
+    private final List<CompletableFuture<Channel>> connects = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void concurrentAcquireShouldConnectOnce() {
+        ChannelPool pool = newPool(2, ChannelSelectEnum.ROUND_ROBIN);
+        CompletableFuture<Channel> first = pool.acquire();
+        CompletableFuture<Channel> second = pool.acquire();
+        assertEquals(1, connects.size());
+        EmbeddedChannel channel = new EmbeddedChannel();
+        connects.get(0).complete(channel);
+        assertSame(channel, first.join());
+        assertSame(channel, second.join());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void busyChannelShouldGrowPoolUpToLimit() {
+        ChannelPool pool = newPool(2, ChannelSelectEnum.LEAST_PENDING);
+        CompletableFuture<Channel> first = pool.acquire();
+        EmbeddedChannel busy = new EmbeddedChannel();
+        connects.get(0).complete(busy);
+        ChannelPool.incrementPending(first.join());
+        // 唯一的连接上有未完成的请求，后台建立第二个连接
+        assertSame(busy, pool.acquire().join());
+        assertEquals(2, connects.size());
+        EmbeddedChannel idle = new EmbeddedChannel();
+        connects.get(1).complete(idle);
+        assertSame(idle, pool.acquire().join());
+        ChannelPool.incrementPending(idle);
+        ChannelPool.incrementPending(idle);
+        assertSame(busy, pool.acquire().join());
+        // 已达到连接数上限
+        assertEquals(2, connects.size());
+        ChannelPool.decrementPending(busy);
+        assertNotSame(idle, pool.acquire().join());
+    }
+
+    @Test
+    void idleChannelShouldBeReaped() {
+        ChannelPool pool = newPool(1, ChannelSelectEnum.ROUND_ROBIN);
+        CompletableFuture<Channel> acquired = pool.acquire();
+        connects.get(0).complete(new EmbeddedChannel());
+        Channel channel = acquired.join();
+        assertFalse(pool.reapIdle(System.nanoTime(), Long.MAX_VALUE));
+        assertTrue(pool.reapIdle(System.nanoTime() + 1, 0));
+        assertFalse(channel.isOpen());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    void failedConnectShouldFailFastAndReconnectWithBackoff() throws Exception {
+        ChannelPool pool = newPool(1, ChannelSelectEnum.ROUND_ROBIN);
+        CompletableFuture<Channel> first = pool.acquire();
+        connects.get(0).completeExceptionally(new IOException("connection refused"));
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(ChannelPool.State.BACKOFF, pool.state());
+        // 等待重连期间立即失败，不再发起连接
+        assertThrows(CompletionException.class, () -> pool.acquire().join());
+        assertEquals(1, connects.size());
+        // 等待时间到后在后台重连
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connects.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, connects.size());
+        assertEquals(ChannelPool.State.CONNECTING, pool.state());
+        EmbeddedChannel channel = new EmbeddedChannel();
+        connects.get(1).complete(channel);
+        assertEquals(ChannelPool.State.CONNECTED, pool.state());
+        assertSame(channel, pool.acquire().join());
+    }
+
+    private ChannelPool newPool(int maxConnections, ChannelSelectEnum channelSelect) {
+        return new ChannelPool(address, maxConnections, channelSelect, this::connect, scheduler, 50, 1000);
+    }
+
+    private CompletableFuture<Channel> connect(InetSocketAddress inetSocketAddress) {
+        CompletableFuture<Channel> future = new CompletableFuture<>();
+        connects.add(future);
+        return future;
+    }
+}
@@ -0,0 +1,142 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.exception.RpcRemoteException;
+import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class ClientStreamTest {
+
+    public interface NumberService {
+        Stream<Integer> count(int n);
+
+        Iterator<String> broken();
+    }
+
+    private static final CountDownLatch CLOSED = new CountDownLatch(1);
+
+    public static class NumberServiceImpl implements NumberService {
+
+        @Override
+        public Stream<Integer> count(int n) {
+            return IntStream.range(0, n).boxed().onClose(CLOSED::countDown);
+        }
+
+        @Override
+        public Iterator<String> broken() {
+            return Stream.of("a", "b", "c").map(s -> {
+                if ("c".equals(s)) {
+                    throw new IllegalStateException("source failed");
+                }
+                return s;
+            }).iterator();
+        }
+    }
+
+    private final EventLoopGroup group = new DefaultEventLoopGroup(2);
+
+    @BeforeAll
+    static void addService() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new NumberServiceImpl()).group("").version("").dispatch("shared").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    void elementsBeyondWindowShouldArriveAsCreditIsGranted() throws Exception {
+        Channel channel = connect("client-stream-test");
+        ClientStream stream = call(channel, 1L, "count", 300);
+        int expected = 0;
+        while (stream.hasNext()) {
+            assertEquals(expected++, stream.next());
+        }
+        assertEquals(300, expected);
+        channel.close().sync();
+    }
+
+    @Test
+    void failureShouldBeThrownAfterSentElements() throws Exception {
+        Channel channel = connect("client-stream-failure-test");
+        ClientStream stream = call(channel, 1L, "broken");
+        assertEquals("a", stream.next());
+        assertEquals("b", stream.next());
+        RpcRemoteException e = assertThrows(RpcRemoteException.class, stream::hasNext);
+        assertEquals(IllegalStateException.class.getName(), e.getExceptionClass());
+        assertFalse(stream.hasNext());
+        channel.close().sync();
+    }
+
+    @Test
+    void closeShouldCancelServerStream() throws Exception {
+        Channel channel = connect("client-stream-cancel-test");
+        ClientStream stream = call(channel, 1L, "count", 100_000);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, stream.next());
+        }
+        stream.close();
+        assertTrue(CLOSED.await(5, TimeUnit.SECONDS));
+        assertFalse(stream.hasNext());
+        channel.close().sync();
+    }
+
+    private Channel connect(String name) throws InterruptedException {
+        LocalAddress address = new LocalAddress(name);
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new NettyRpcServerHandler()).bind(address).sync();
+        return new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new NettyRpcClientHandler()).connect(address).sync().channel();
+    }
+
+    private static ClientStream call(Channel channel, long requestId, String methodName, Object... args) {
+        Class<?>[] paramTypes = new Class<?>[args.length];
+        Arrays.fill(paramTypes, int.class);
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .requestId(requestId)
+                .interfaceName(NumberService.class.getCanonicalName())
+                .methodName(methodName)
+                .paramTypes(paramTypes)
+                .parameters(args)
+                .group("")
+                .version("").build();
+        ClientStream stream = new ClientStream(requestId, 5000);
+        channel.writeAndFlush(new RpcStreamCall(RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(rpcRequest).build(), stream));
+        return stream;
+    }
+}
@@ -0,0 +1,72 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.handler.RpcRequestHandler;
+import com.feyl.service.DemoRpcService;
+import com.feyl.service.impl.DemoRpcServiceImpl;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Feyl
+ */
+class NettyRpcClientHandlerTest {
+
+    @Test
+    void requestsAfterHandshakeShouldCarryOnlyMethodId() {
+        ZkServiceProviderImpl serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        serviceProvider.addService(RpcServiceConfig.builder()
+                .service(new DemoRpcServiceImpl()).group("test1").version("version1").build());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcClientHandler());
+        RpcMessage handshake = channel.readOutbound();
+        assertEquals(RpcConstant.HANDSHAKE_REQUEST_TYPE, handshake.getMessageType());
+
+        // 握手完成前发送完整的请求
+        RpcMessage before = write(channel, 1L);
+        assertEquals(0, ((RpcRequest) before.getData()).getMethodId());
+
+        channel.writeInbound(RpcMessage.builder()
+                .messageType(RpcConstant.HANDSHAKE_RESPONSE_TYPE)
+                .data(serviceProvider.getMethodTable()).build());
+        RpcRequest compact = (RpcRequest) write(channel, 2L).getData();
+        assertNotEquals(0, compact.getMethodId());
+        assertNull(compact.getInterfaceName());
+        assertNull(compact.getMethodName());
+        assertNull(compact.getParamTypes());
+
+        // 服务端按方法签名或方法ID找到添加服务时构建好的调用器
+        RpcRequestHandler rpcRequestHandler = new RpcRequestHandler();
+        assertEquals("hello", rpcRequestHandler.handle((RpcRequest) before.getData()));
+        assertEquals("hello", rpcRequestHandler.handle(compact));
+    }
+
+    private static RpcMessage write(EmbeddedChannel channel, long requestId) {
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .requestId(requestId)
+                .interfaceName(DemoRpcService.class.getName())
+                .methodName("hello")
+                .paramTypes(new Class<?>[0])
+                .parameters(new Object[0])
+                .group("test1")
+                .version("version1").build();
+        RpcMessage rpcMsg = RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(rpcRequest).build();
+        channel.writeOutbound(new RpcCall(rpcMsg, new CompletableFuture<RpcResponse<Object>>()));
+        return channel.readOutbound();
+    }
+}
@@ -0,0 +1,68 @@
+package com.feyl.remoting.transport.netty.client;
+
+import com.feyl.exception.RpcException;
+import com.feyl.remoting.dto.RpcResponse;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class UnprocessedRequestsTest {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+
+    private final UnprocessedRequests unprocessedRequests = new UnprocessedRequests(channel);
+
+    @Test
+    void timedOutRequestShouldFailAndIgnoreLateResponse() {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        UnprocessedRequests.timeout(1L, future, 50);
+        unprocessedRequests.put(1L, future);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcException);
+        // 超时的请求在 EventLoop 中移除
+        channel.runPendingTasks();
+        assertEquals(0, unprocessedRequests.size());
+        // 迟到的响应被丢弃
+        unprocessedRequests.complete(RpcResponse.success(1L, "late"));
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    void closedChannelShouldFailAllPendingRequests() {
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        unprocessedRequests.put(1L, first);
+        unprocessedRequests.put(2L, second);
+        unprocessedRequests.failAll(new RpcException("closed", null));
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        assertEquals(0, unprocessedRequests.size());
+    }
+
+    @Test
+    void responseShouldCompleteMatchingRequestAndCancelTimeout() throws Exception {
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        UnprocessedRequests.timeout(1L, first, 500);
+        unprocessedRequests.put(1L, first);
+        unprocessedRequests.put(2L, second);
+        unprocessedRequests.complete(RpcResponse.success(1L, "hello"));
+        Thread.sleep(700);
+        assertFalse(first.isCompletedExceptionally());
+        assertEquals("hello", first.join().getData());
+        assertFalse(second.isDone());
+        assertEquals(1, unprocessedRequests.size());
+    }
+}
@@ -0,0 +1,271 @@
+package com.feyl.remoting.transport.netty.codec;
+
+import com.feyl.compress.dict.OutboundDictionaries;
+import com.feyl.enums.CompressTypeEnum;
+import com.feyl.enums.SerializationTypeEnum;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.MethodDescriptor;
+import com.feyl.remoting.dto.MethodTable;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+@SuppressWarnings("unchecked")
+class RpcMessageCodecTest {
+
+    /**
+     * 消息头中压缩方式所在的下标
+     */
+    private static final int COMPRESS_INDEX = 11;
+
+    @Test
+    void encodedFrameShouldBeDecodedToSameRequest() {
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            assertRoundTrip(serialization.getCode());
+        }
+    }
+
+    @Test
+    void handshakeResponseShouldCarryMethodTable() {
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            MethodTable methodTable = new MethodTable(Collections.singletonList(MethodDescriptor.builder()
+                    .methodId(1)
+                    .rpcServiceName("com.feyl.HelloServicegroup1version1")
+                    .methodName("hello")
+                    .paramTypes(new String[]{String.class.getName()}).build()));
+            EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+            encoder.writeOutbound(RpcMessage.builder()
+                    .messageType(RpcConstant.HANDSHAKE_RESPONSE_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .data(methodTable).build());
+            EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+            decoder.writeInbound((ByteBuf) encoder.readOutbound());
+            MethodTable decoded = (MethodTable) ((RpcMessage) decoder.readInbound()).getData();
+            assertEquals(1, decoded.getMethods().size());
+            assertEquals("hello", decoded.getMethods().get(0).getMethodName());
+        }
+    }
+
+    @Test
+    void streamCreditShouldBeWrittenAsRawInt() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(RpcMessage.builder()
+                .requestId(7L)
+                .messageType(RpcConstant.STREAM_CREDIT_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(-1).build());
+        ByteBuf frame = encoder.readOutbound();
+        assertEquals(RpcConstant.HEAD_LENGTH + 4, frame.readableBytes());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        decoder.writeInbound(frame);
+        RpcMessage decoded = decoder.readInbound();
+        assertEquals(7L, decoded.getRequestId());
+        assertEquals(-1, decoded.getData());
+    }
+
+    @Test
+    void batchFrameShouldCarryEveryRequestAndCompressOnce() {
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            List<RpcMessage> items = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                items.add(RpcMessage.builder()
+                        .requestId(i)
+                        .messageType(RpcConstant.REQUEST_TYPE)
+                        .data(RpcRequest.builder().methodName("hello")
+                                .parameters(new Object[]{"parameter-" + i})
+                                .interfaceName("com.feyl.HelloService")
+                                .paramTypes(new Class<?>[]{String.class})
+                                .group("group1")
+                                .version("version1").build()).build());
+            }
+            EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+            encoder.writeOutbound(RpcMessage.builder()
+                    .messageType(RpcConstant.BATCH_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .data(items).build());
+            ByteBuf frame = encoder.readOutbound();
+            // 重复的服务名、方法名在一个帧中一起压缩
+            assertEquals(CompressTypeEnum.GZIP.getCode(), frame.getByte(COMPRESS_INDEX));
+
+            EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+            decoder.writeInbound(frame);
+            List<RpcMessage> decoded = (List<RpcMessage>) ((RpcMessage) decoder.readInbound()).getData();
+            assertEquals(20, decoded.size());
+            for (int i = 1; i <= 20; i++) {
+                RpcRequest request = (RpcRequest) decoded.get(i - 1).getData();
+                assertEquals(i, decoded.get(i - 1).getRequestId());
+                assertEquals(i, request.getRequestId());
+                assertEquals("parameter-" + i, request.getParameters()[0]);
+            }
+        }
+    }
+
+    @Test
+    void malformedBatchShouldFailWithDecodeError() {
+        // 消息个数超过消息体能容纳的数量
+        ByteBuf hugeCount = Unpooled.buffer().writeInt(Integer.MAX_VALUE);
+        assertThrows(CorruptedFrameException.class,
+                () -> new EmbeddedChannel(new RpcMessageDecoder()).writeInbound(frame(RpcConstant.BATCH_TYPE, hugeCount)));
+        ByteBuf negativeCount = Unpooled.buffer().writeInt(-1);
+        assertThrows(CorruptedFrameException.class,
+                () -> new EmbeddedChannel(new RpcMessageDecoder()).writeInbound(frame(RpcConstant.BATCH_TYPE, negativeCount)));
+        // 消息长度超过消息体剩余的字节数
+        ByteBuf hugeLength = Unpooled.buffer().writeInt(1)
+                .writeByte(RpcConstant.REQUEST_TYPE).writeLong(1L).writeInt(Integer.MAX_VALUE);
+        assertThrows(CorruptedFrameException.class,
+                () -> new EmbeddedChannel(new RpcMessageDecoder()).writeInbound(frame(RpcConstant.BATCH_TYPE, hugeLength)));
+    }
+
+    @Test
+    void dictionaryBeyondLimitsShouldFailWithDecodeError() {
+        assertThrows(CorruptedFrameException.class, () -> new EmbeddedChannel(new RpcMessageDecoder())
+                .writeInbound(frame(RpcConstant.DICTIONARY_TYPE, Unpooled.buffer().writeShort(1))));
+        ByteBuf oversized = Unpooled.buffer().writeInt(1).writeZero(OutboundDictionaries.MAX_DICTIONARY_SIZE + 1);
+        assertThrows(CorruptedFrameException.class, () -> new EmbeddedChannel(new RpcMessageDecoder())
+                .writeInbound(frame(RpcConstant.DICTIONARY_TYPE, oversized)));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        for (int id = 1; id <= OutboundDictionaries.MAX_DICTIONARIES; id++) {
+            decoder.writeInbound(frame(RpcConstant.DICTIONARY_TYPE, Unpooled.buffer().writeInt(id).writeZero(16)));
+        }
+        // 替换已有的字典不受个数限制，新的字典超过上限
+        decoder.writeInbound(frame(RpcConstant.DICTIONARY_TYPE, Unpooled.buffer().writeInt(1).writeZero(16)));
+        assertThrows(CorruptedFrameException.class, () -> decoder.writeInbound(frame(RpcConstant.DICTIONARY_TYPE,
+                Unpooled.buffer().writeInt(OutboundDictionaries.MAX_DICTIONARIES + 1).writeZero(16))));
+    }
+
+    @Test
+    void headerShouldReflectAppliedCompression() {
+        char[] repeated = new char[4096];
+        Arrays.fill(repeated, 'a');
+        assertEquals(CompressTypeEnum.NONE.getCode(), encode("small").getByte(COMPRESS_INDEX));
+        assertEquals(CompressTypeEnum.GZIP.getCode(), encode(new String(repeated)).getByte(COMPRESS_INDEX));
+    }
+
+    @Test
+    void dictionaryShouldBeAnnouncedBeforeFirstUse() throws InterruptedException {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        int firstLength = 0;
+        int lastLength = 0;
+        // 字典在训练线程中生成，采样结束后继续发送直到字典开始使用
+        long deadline = System.currentTimeMillis() + 5000;
+        for (int i = 0; i < 32 || lastLength >= firstLength / 2 && System.currentTimeMillis() < deadline; i++) {
+            RpcRequest request = RpcRequest.builder().methodName("hello")
+                    .parameters(new Object[]{"parameter-" + i})
+                    .interfaceName("com.feyl.HelloService")
+                    .paramTypes(new Class<?>[]{String.class})
+                    .requestId(i)
+                    .group("group1")
+                    .version("version1")
+                    .build();
+            encoder.writeOutbound(RpcMessage.builder()
+                    .requestId(i)
+                    .messageType(RpcConstant.REQUEST_TYPE)
+                    .codec(SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(CompressTypeEnum.DEFLATE_DICT.getCode())
+                    .data(request).build());
+            ByteBuf frame = encoder.readOutbound();
+            if (i == 0) {
+                firstLength = frame.readableBytes();
+            }
+            lastLength = frame.readableBytes();
+            decoder.writeInbound(frame);
+            RpcMessage decoded = decoder.readInbound();
+            assertEquals("parameter-" + i, ((RpcRequest) decoded.getData()).getParameters()[0]);
+            assertEquals(i, decoded.getRequestId());
+            assertNull(decoder.readInbound());
+            if (i >= 32) {
+                Thread.sleep(1);
+            }
+        }
+        // 训练出字典后，同一服务的消息应明显变小
+        assertTrue(lastLength < firstLength / 2, lastLength + " vs " + firstLength);
+    }
+
+    private ByteBuf encode(String parameter) {
+        RpcRequest request = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{parameter})
+                .interfaceName("com.feyl.HelloService")
+                .paramTypes(new Class<?>[]{String.class})
+                .build();
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(request).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(rpcMessage);
+        return encoder.readOutbound();
+    }
+
+    /**
+     * 按协议手工拼出一个未压缩的帧
+     */
+    private static ByteBuf frame(byte messageType, ByteBuf body) {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(RpcConstant.MAGIC_NUMBER_INT);
+        frame.writeByte(RpcConstant.VERSION);
+        frame.writeInt(RpcConstant.HEAD_LENGTH + body.readableBytes());
+        frame.writeByte(messageType);
+        frame.writeByte(SerializationTypeEnum.HESSIAN.getCode());
+        frame.writeByte(CompressTypeEnum.NONE.getCode());
+        frame.writeLong(1L);
+        frame.writeBytes(body);
+        return frame;
+    }
+
+    private void assertRoundTrip(byte codec) {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("com.feyl.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(Long.MAX_VALUE - 1)
+                .group("group1")
+                .version("version1")
+                .build();
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .requestId(target.getRequestId())
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .codec(codec)
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(target).build();
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        assertTrue(encoder.writeOutbound(rpcMessage));
+        ByteBuf frame = encoder.readOutbound();
+        // 回填的 full length 应与实际帧长度一致
+        assertEquals(frame.readableBytes(), frame.getInt(RpcConstant.MAGIC_NUMBER.length + 1));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        assertTrue(decoder.writeInbound(frame));
+        RpcMessage decoded = decoder.readInbound();
+        RpcRequest actual = (RpcRequest) decoded.getData();
+        assertEquals(RpcConstant.REQUEST_TYPE, decoded.getMessageType());
+        // 请求ID只在消息头中传输，解码后回填到请求中
+        assertEquals(target.getRequestId(), decoded.getRequestId());
+        assertEquals(target.getRequestId(), actual.getRequestId());
+        assertEquals(target.getMethodName(), actual.getMethodName());
+        assertEquals(target.getParameters()[1], actual.getParameters()[1]);
+    }
+}
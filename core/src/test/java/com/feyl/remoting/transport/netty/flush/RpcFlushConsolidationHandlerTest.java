@@ -0,0 +1,87 @@
+package com.feyl.remoting.transport.netty.flush;
+
+import com.feyl.enums.FlushModeEnum;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class RpcFlushConsolidationHandlerTest {
+
+    private final FlushMetrics flushMetrics = RpcFlushConsolidationHandler.getMetrics();
+
+    @Test
+    void writesInSameTickShouldBeFlushedOnce() throws Exception {
+        // EmbeddedChannel 每次写操作都会执行任务队列，这里使用真实的 EventLoop
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            LocalAddress address = new LocalAddress("flush-consolidation-test");
+            CountDownLatch received = new CountDownLatch(3);
+            new ServerBootstrap().group(group)
+                    .channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            received.countDown();
+                        }
+                    })
+                    .bind(address).sync();
+            Channel client = new Bootstrap().group(group)
+                    .channel(LocalChannel.class)
+                    .handler(new RpcFlushConsolidationHandler(FlushModeEnum.TICK, 0))
+                    .connect(address).sync().channel();
+            long flushes = flushMetrics.getFlushCount();
+            long frames = flushMetrics.getFrameCount();
+            long flushesInTick = client.eventLoop().submit(() -> {
+                for (int i = 0; i < 3; i++) {
+                    client.writeAndFlush(i);
+                }
+                return flushMetrics.getFlushCount();
+            }).get();
+            // flush 被推迟到任务队列末尾，同一次循环中还没有 flush
+            assertEquals(flushes, flushesInTick);
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertEquals(flushes + 1, flushMetrics.getFlushCount());
+            assertEquals(frames + 3, flushMetrics.getFrameCount());
+            assertTrue(flushMetrics.getMaxFramesPerFlush() >= 3);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    void flushInReadShouldBeDeferredToReadComplete() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcFlushConsolidationHandler(FlushModeEnum.TICK, 0));
+        channel.pipeline().fireChannelRead("request");
+        channel.writeAndFlush("response");
+        assertNull(channel.readOutbound());
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals("response", channel.readOutbound());
+    }
+
+    @Test
+    void pendingWritesShouldBeFlushedOnClose() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcFlushConsolidationHandler(FlushModeEnum.WINDOW, 1000_000));
+        channel.writeAndFlush("message");
+        assertNull(channel.readOutbound());
+        channel.close();
+        assertEquals("message", channel.readOutbound());
+    }
+}
@@ -0,0 +1,484 @@
+package com.feyl.remoting.transport.netty.server;
+
+import com.feyl.config.RpcServiceConfig;
+import com.feyl.enums.RpcResponseCodeEnum;
+import com.feyl.factory.SingletonFactory;
+import com.feyl.provider.impl.ZkServiceProviderImpl;
+import com.feyl.remoting.constants.RpcConstant;
+import com.feyl.remoting.dto.RpcError;
+import com.feyl.remoting.dto.RpcMessage;
+import com.feyl.remoting.dto.RpcRequest;
+import com.feyl.remoting.dto.RpcResponse;
+import com.feyl.remoting.stream.RpcStreamObserver;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Feyl
+ */
+class NettyRpcServerHandlerTest {
+
+    public interface SlowService {
+        String slow();
+
+        String fast();
+
+        String blocked();
+    }
+
+    private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    private static final CountDownLatch UNBLOCK = new CountDownLatch(1);
+
+    public static class SlowServiceImpl implements SlowService {
+
+        @Override
+        public String slow() {
+            try {
+                RELEASE.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }
+
+        @Override
+        public String fast() {
+            return "fast";
+        }
+
+        @Override
+        public String blocked() {
+            try {
+                UNBLOCK.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocked";
+        }
+    }
+
+    public interface PingService {
+        String ping();
+    }
+
+    public static class PingServiceImpl implements PingService {
+
+        @Override
+        public String ping() {
+            return "pong";
+        }
+    }
+
+    public interface AuditService {
+        void audit(String event);
+    }
+
+    private static final BlockingQueue<String> AUDITED = new LinkedBlockingQueue<>();
+
+    public static class AuditServiceImpl implements AuditService {
+
+        @Override
+        public void audit(String event) {
+            AUDITED.add(event);
+        }
+    }
+
+    public interface AsyncService {
+        CompletableFuture<String> later();
+
+        CompletableFuture<String> broken();
+    }
+
+    private static final CompletableFuture<String> LATER = new CompletableFuture<>();
+
+    public static class AsyncServiceImpl implements AsyncService {
+
+        @Override
+        public CompletableFuture<String> later() {
+            return LATER;
+        }
+
+        @Override
+        public CompletableFuture<String> broken() {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("downstream failed"));
+            return future;
+        }
+    }
+
+    public interface CountService {
+        Stream<Integer> count(int n);
+
+        Stream<Integer> range(int n);
+    }
+
+    private static final AtomicInteger PULLED = new AtomicInteger();
+
+    private static final CountDownLatch CLOSED = new CountDownLatch(1);
+
+    public static class CountServiceImpl implements CountService {
+
+        @Override
+        public Stream<Integer> count(int n) {
+            return IntStream.range(0, n).boxed().peek(i -> PULLED.incrementAndGet()).onClose(CLOSED::countDown);
+        }
+
+        @Override
+        public Stream<Integer> range(int n) {
+            return IntStream.range(0, n).boxed();
+        }
+    }
+
+    public interface EchoService {
+        RpcStreamObserver<String> echo(RpcStreamObserver<String> replies);
+    }
+
+    public static class EchoServiceImpl implements EchoService {
+
+        @Override
+        public RpcStreamObserver<String> echo(RpcStreamObserver<String> replies) {
+            return new RpcStreamObserver<String>() {
+                @Override
+                public void onNext(String value) {
+                    // direct 线程模型下在 IO 线程中发送，一次发出超过窗口的消息
+                    for (int i = 0; i < 10; i++) {
+                        replies.onNext(value + i);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    replies.onCompleted();
+                }
+            };
+        }
+    }
+
+    private final EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+    private final BlockingQueue<RpcMessage> responses = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    void slowRequestShouldNotBlockLaterRequestsOnSameConnection() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new SlowServiceImpl()).group("").version("").dispatch("shared").build());
+        Channel client = connect("dispatch-test");
+
+        client.writeAndFlush(request(SlowService.class, 1L, "slow"));
+        client.writeAndFlush(request(SlowService.class, 2L, "fast"));
+        RpcMessage first = responses.poll(5, TimeUnit.SECONDS);
+        assertEquals(2L, first.getRequestId());
+        assertEquals("fast", ((RpcResponse<?>) first.getData()).getData());
+
+        RELEASE.countDown();
+        RpcMessage second = responses.poll(5, TimeUnit.SECONDS);
+        assertEquals(1L, second.getRequestId());
+        assertEquals("slow", ((RpcResponse<?>) second.getData()).getData());
+        client.close().sync();
+    }
+
+    @Test
+    void asyncResultShouldBeWrittenWhenFutureCompletes() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new AsyncServiceImpl()).group("").version("").dispatch("direct").build());
+        Channel client = connect("async-test");
+
+        client.writeAndFlush(request(AsyncService.class, 1L, "later"));
+        client.writeAndFlush(request(AsyncService.class, 2L, "broken"));
+        RpcMessage failed = responses.poll(5, TimeUnit.SECONDS);
+        assertEquals(2L, failed.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) failed.getData()).getCode());
+        RpcError error = ((RpcResponse<?>) failed.getData()).getError();
+        assertEquals(IllegalStateException.class.getName(), error.getExceptionClass());
+        assertEquals("downstream failed", error.getMessage());
+        // future 未完成前不写回响应，也不占用线程
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+
+        LATER.complete("later");
+        RpcMessage completed = responses.poll(5, TimeUnit.SECONDS);
+        assertEquals(1L, completed.getRequestId());
+        assertEquals("later", ((RpcResponse<?>) completed.getData()).getData());
+        client.close().sync();
+    }
+
+    @Test
+    void unknownServiceShouldGetErrorResponse() throws Exception {
+        Channel client = connect("not-found-test");
+        client.writeAndFlush(request(Runnable.class, 1L, "run"));
+        RpcMessage response = responses.poll(5, TimeUnit.SECONDS);
+        assertEquals(1L, response.getRequestId());
+        assertEquals(RpcResponseCodeEnum.NOT_FOUND.getCode(), ((RpcResponse<?>) response.getData()).getCode());
+        // 连接不会因为调用失败而关闭
+        assertTrue(client.isActive());
+        client.close().sync();
+    }
+
+    @Test
+    void slowItemShouldNotDelayOtherItemsOfBatch() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new SlowServiceImpl()).group("").version("").dispatch("shared").build());
+        Channel client = connect("batch-test");
+        RpcMessage batch = RpcMessage.builder()
+                .messageType(RpcConstant.BATCH_TYPE)
+                .data(Arrays.asList(request(SlowService.class, 1L, "blocked"), request(Runnable.class, 2L, "run"),
+                        request(SlowService.class, 3L, "fast"))).build();
+        client.writeAndFlush(batch);
+        // 慢请求还没有返回时，其他请求的响应已经写回（单个响应或合并为 BATCH）
+        Map<Long, RpcResponse<?>> received = new HashMap<>();
+        while (received.size() < 2) {
+            collect(responses.poll(5, TimeUnit.SECONDS), received);
+        }
+        assertEquals("fast", received.get(3L).getData());
+        assertEquals(RpcResponseCodeEnum.NOT_FOUND.getCode(), received.get(2L).getCode());
+        assertFalse(received.containsKey(1L));
+
+        UNBLOCK.countDown();
+        collect(responses.poll(5, TimeUnit.SECONDS), received);
+        assertEquals("blocked", received.get(1L).getData());
+        client.close().sync();
+    }
+
+    @Test
+    void responseShouldBeWrittenWhenChannelIsNotWritable() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new PingServiceImpl()).group("").version("").dispatch("direct").build());
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        // 未 flush 的数据超过高水位，模拟被流式响应占满的出站缓冲区
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1, 2));
+        channel.write(Unpooled.wrappedBuffer(new byte[16]));
+        assertFalse(channel.isWritable());
+
+        channel.writeInbound(request(PingService.class, 1L, "ping"));
+        ((ByteBuf) channel.readOutbound()).release();
+        RpcMessage response = channel.readOutbound();
+        assertEquals(1L, response.getRequestId());
+        assertEquals("pong", ((RpcResponse<?>) response.getData()).getData());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void onewayRequestShouldNotBeAnswered() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new AuditServiceImpl()).group("").version("").dispatch("direct").build());
+        Channel client = connect("oneway-test");
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.ONEWAY_REQUEST_TYPE)
+                .data(RpcRequest.builder()
+                        .interfaceName(AuditService.class.getCanonicalName())
+                        .methodName("audit")
+                        .paramTypes(new Class<?>[]{String.class})
+                        .parameters(new Object[]{"login"})
+                        .group("")
+                        .version("").build()).build());
+        assertEquals("login", AUDITED.poll(5, TimeUnit.SECONDS));
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        client.close().sync();
+    }
+
+    @Test
+    void streamShouldStopWhenCreditIsUsedUp() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new CountServiceImpl()).group("").version("").dispatch("shared").build());
+        Channel client = connect("stream-test");
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(RpcRequest.builder()
+                        .requestId(1L)
+                        .interfaceName(CountService.class.getCanonicalName())
+                        .methodName("count")
+                        .paramTypes(new Class<?>[]{int.class})
+                        .parameters(new Object[]{1000})
+                        .group("")
+                        .version("").build()).build());
+
+        // 初始额度为一个窗口，用完后服务端不再取元素
+        for (int i = 0; i < 64; i++) {
+            RpcMessage data = responses.poll(5, TimeUnit.SECONDS);
+            assertNotNull(data);
+            assertEquals(RpcConstant.STREAM_DATA_TYPE, data.getMessageType());
+            assertEquals(1L, data.getRequestId());
+            assertEquals(i, ((RpcResponse<?>) data.getData()).getData());
+        }
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(64, PULLED.get());
+
+        client.writeAndFlush(credit(1L, 10));
+        for (int i = 64; i < 74; i++) {
+            assertEquals(i, ((RpcResponse<?>) responses.poll(5, TimeUnit.SECONDS).getData()).getData());
+        }
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+
+        // 取消后关闭服务方法返回的 Stream，不再发送任何帧
+        client.writeAndFlush(credit(1L, -1));
+        assertTrue(CLOSED.await(5, TimeUnit.SECONDS));
+        assertEquals(74, PULLED.get());
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        client.close().sync();
+    }
+
+    @Test
+    void streamShouldStartWithClientWindow() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new CountServiceImpl()).group("").version("").dispatch("shared").build());
+        Channel client = connect("stream-window-test");
+        // 客户端的接收窗口小于服务端配置的窗口时，服务端按客户端的窗口发送
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(RpcRequest.builder()
+                        .requestId(1L)
+                        .interfaceName(CountService.class.getCanonicalName())
+                        .methodName("range")
+                        .paramTypes(new Class<?>[]{int.class})
+                        .parameters(new Object[]{1000})
+                        .group("")
+                        .version("")
+                        .streamWindow(16).build()).build());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, ((RpcResponse<?>) responses.poll(5, TimeUnit.SECONDS).getData()).getData());
+        }
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        client.close().sync();
+    }
+
+    @Test
+    void bidiSendsOnEventLoopShouldRespectClientWindow() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .service(new EchoServiceImpl()).group("").version("").dispatch("direct").build());
+        Channel client = connect("bidi-window-test");
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(RpcRequest.builder()
+                        .requestId(1L)
+                        .interfaceName(EchoService.class.getCanonicalName())
+                        .methodName("echo")
+                        .paramTypes(new Class<?>[]{RpcStreamObserver.class})
+                        .parameters(new Object[1])
+                        .group("")
+                        .version("")
+                        .streamWindow(4).build()).build());
+        // 服务端先告知自己的接收窗口
+        assertEquals(RpcConstant.STREAM_CREDIT_TYPE, responses.poll(5, TimeUnit.SECONDS).getMessageType());
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.STREAM_DATA_TYPE)
+                .data(RpcResponse.success(1L, "r")).build());
+
+        // 没有额度的消息缓存在服务端，不超出客户端的窗口
+        for (int i = 0; i < 4; i++) {
+            assertEquals("r" + i, ((RpcResponse<?>) responses.poll(5, TimeUnit.SECONDS).getData()).getData());
+        }
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+
+        // 结束帧排在缓存的消息之后
+        client.writeAndFlush(RpcMessage.builder()
+                .requestId(1L)
+                .messageType(RpcConstant.STREAM_END_TYPE)
+                .data(RpcResponse.success(1L, null)).build());
+        client.writeAndFlush(credit(1L, 3));
+        for (int i = 4; i < 7; i++) {
+            assertEquals("r" + i, ((RpcResponse<?>) responses.poll(5, TimeUnit.SECONDS).getData()).getData());
+        }
+        assertNull(responses.poll(100, TimeUnit.MILLISECONDS));
+        client.writeAndFlush(credit(1L, 10));
+        for (int i = 7; i < 10; i++) {
+            RpcMessage data = responses.poll(5, TimeUnit.SECONDS);
+            assertEquals(RpcConstant.STREAM_DATA_TYPE, data.getMessageType());
+            assertEquals("r" + i, ((RpcResponse<?>) data.getData()).getData());
+        }
+        assertEquals(RpcConstant.STREAM_END_TYPE, responses.poll(5, TimeUnit.SECONDS).getMessageType());
+        client.close().sync();
+    }
+
+    private Channel connect(String name) throws InterruptedException {
+        LocalAddress address = new LocalAddress(name);
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new NettyRpcServerHandler()).bind(address).sync();
+        return new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        responses.add((RpcMessage) msg);
+                    }
+                }).connect(address).sync().channel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collect(RpcMessage response, Map<Long, RpcResponse<?>> received) {
+        assertNotNull(response);
+        if (response.getMessageType() == RpcConstant.BATCH_TYPE) {
+            for (RpcMessage item : (List<RpcMessage>) response.getData()) {
+                received.put(item.getRequestId(), (RpcResponse<?>) item.getData());
+            }
+        } else {
+            received.put(response.getRequestId(), (RpcResponse<?>) response.getData());
+        }
+    }
+
+    private static RpcMessage credit(long requestId, int credit) {
+        return RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstant.STREAM_CREDIT_TYPE)
+                .data(credit).build();
+    }
+
+    private static RpcMessage request(Class<?> serviceInterface, long requestId, String methodName) {
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .interfaceName(serviceInterface.getCanonicalName())
+                .methodName(methodName)
+                .paramTypes(new Class<?>[0])
+                .group("")
+                .version("").build();
+        rpcRequest.setRequestId(requestId);
+        return RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstant.REQUEST_TYPE)
+                .data(rpcRequest).build();
+    }
+}